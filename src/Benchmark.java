@@ -1,8 +1,9 @@
 import java.io.IOException;
-import java.nio.ByteBuffer;
-import java.nio.channels.FileChannel;
 import java.util.*;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import javax.xml.parsers.ParserConfigurationException;
 import org.xml.sax.SAXException;
 
@@ -63,25 +64,163 @@ public class Benchmark {
             long tInsertEnd = System.nanoTime();
             System.out.printf("   Ολοκληρώθηκε insertPointer ένα-προς-ένα: %.2f ms%n",
                     (tInsertEnd - tInsertStart) / 1_000_000.0);
+            System.out.printf("   Buffer pool: %s%n", tree1.getBufferPool());
+            System.out.printf("   Ανά εισαγωγή: %.4f splits, %.4f forced reinserts (%.3f entries)%n",
+                    (double) tree1.getSplits() / tree1.getInserts(),
+                    (double) tree1.getReinserts() / tree1.getInserts(),
+                    (double) tree1.getReinsertedEntries() / tree1.getInserts());
+
+            tree1.close();
 
             df1.close();
-            idx1.close();
 
 
             // 4) Κατασκευή R*-tree με bulkLoad
             System.out.println("\n4) Κατασκευή R*-tree με bulkLoad...");
             DataFile df2 = new DataFile(DATAFILE_NAME, DIMENSIONS);
             IndexFile idx2 = new IndexFile(INDEXFILE_NAME, DIMENSIONS);
-            RStarTree tree2 = new RStarTree(DIMENSIONS, df2, idx2);
+            // Με aggregate counts, ώστε το countInRange των ερωτημάτων να μη διαβάζει φύλλα
+            RStarTree tree2 = new RStarTree(DIMENSIONS, df2, idx2,
+                    new TreeConfig(DIMENSIONS, idx2.getPageSize()).withAggregateCounts(true));
 
             long tBulkStart = System.nanoTime();
             tree2.bulkLoad(records);
             long tBulkEnd = System.nanoTime();
             System.out.printf("   BulkLoad %d εγγραφών σε R*-tree: %.2f ms%n",
                     records.size(), (tBulkEnd - tBulkStart) / 1_000_000.0);
+            System.out.printf("   Μέγεθος index: %.1f KB (σελίδα κόμβου %d bytes)%n",
+                    new java.io.File(INDEXFILE_NAME).length() / 1024.0, idx2.getPageSize());
+
+            tree2.close();
 
             df2.close();
-            idx2.close();
+
+
+            // 4.1) Σύγκριση στρατηγικών bulkLoad: κόμβοι που επισκέπτονται τα ερωτήματα και latency
+            System.out.println("\n4.1) Σύγκριση στρατηγικών bulkLoad (range R = 0.0005, k-NN k = " + K_NEIGHBORS + "):");
+            List<double[]> strategyPoints = pickRandomCoordinates(records, NUM_POINTS_FOR_QUERIES);
+            for (BulkLoadStrategy strategy : BulkLoadStrategy.values()) {
+                String dataName = "bulk_" + strategy + ".dat";
+                String indexName = "bulk_" + strategy + ".idx";
+                new java.io.File(dataName).delete();
+                DataFile dfS = new DataFile(dataName, DIMENSIONS);
+                IndexFile idxS = new IndexFile(indexName, DIMENSIONS);
+                RStarTree treeS = new RStarTree(DIMENSIONS, dfS, idxS);
+
+                long tb0 = System.nanoTime();
+                treeS.bulkLoad(records, strategy, RStarTree.DEFAULT_FILL_FACTOR);
+                long tb1 = System.nanoTime();
+
+                BufferPool pool = treeS.getBufferPool();
+                double radius = 0.0005;
+                pool.resetStats();
+                long tr0 = System.nanoTime();
+                for (double[] center : strategyPoints) {
+                    double[] minR = { center[0] - radius, center[1] - radius };
+                    double[] maxR = { center[0] + radius, center[1] + radius };
+                    treeS.rangeQuery(minR, maxR);
+                }
+                long tr1 = System.nanoTime();
+                long rangeVisits = pool.getHits() + pool.getMisses();
+
+                pool.resetStats();
+                long tk0 = System.nanoTime();
+                for (double[] q : strategyPoints) {
+                    treeS.kNNQuery(q, K_NEIGHBORS);
+                }
+                long tk1 = System.nanoTime();
+                long knnVisits = pool.getHits() + pool.getMisses();
+
+                int nq = strategyPoints.size();
+                System.out.printf("   %-7s build: %7.2f ms | range: %6.1f κόμβοι, %6.3f ms | k-NN: %6.1f κόμβοι, %6.3f ms%n",
+                        strategy, (tb1 - tb0) / 1_000_000.0,
+                        (double) rangeVisits / nq, (tr1 - tr0) / 1_000_000.0 / nq,
+                        (double) knnVisits / nq, (tk1 - tk0) / 1_000_000.0 / nq);
+
+                treeS.close();
+
+                dfS.close();
+                new java.io.File(dataName).delete();
+                new java.io.File(indexName).delete();
+                new java.io.File(dataName + DataFile.COLUMNS_SUFFIX).delete();
+            }
+
+
+            // 4.2) External-memory bulk load με περιορισμένη μνήμη ταξινόμησης
+            System.out.println("\n4.2) External-memory bulk load (Hilbert, όριο μνήμης 256 KB)...");
+            new java.io.File("bulk_external.dat").delete();
+            DataFile dfExt = new DataFile("bulk_external.dat", DIMENSIONS);
+            IndexFile idxExt = new IndexFile("bulk_external.idx", DIMENSIONS);
+            RStarTree treeExt = new RStarTree(DIMENSIONS, dfExt, idxExt);
+            ExternalBulkLoader loader = new ExternalBulkLoader(treeExt, 256 * 1024, null,
+                    RStarTree.DEFAULT_FILL_FACTOR);
+            long tExt0 = System.nanoTime();
+            loader.load(records.iterator());
+            long tExt1 = System.nanoTime();
+            System.out.printf("   External bulk load: %.2f ms (%s)%n", (tExt1 - tExt0) / 1_000_000.0, loader);
+            treeExt.close();
+            dfExt.close();
+            new java.io.File("bulk_external.dat").delete();
+            new java.io.File("bulk_external.idx").delete();
+            new java.io.File("bulk_external.dat" + DataFile.COLUMNS_SUFFIX).delete();
+
+
+            // 4.3) Σάρωση χωρητικότητας κόμβου: insert ένα-προς-ένα για διάφορα M (σελίδα = η μικρότερη που χωράει)
+            System.out.println("\n4.3) Σάρωση χωρητικότητας κόμβου (insert ένα-προς-ένα, range R = 0.0005):");
+            List<TreeConfig> sweep = new ArrayList<>();
+            for (int capacity : new int[] { 8, 16, 24, 32, 50, 64, 100, 128, 200 }) {
+                sweep.add(TreeConfig.forCapacity(DIMENSIONS, capacity));
+            }
+            sweep.add(TreeConfig.forCapacity(DIMENSIONS, 50, TreeConfig.DEFAULT_MIN_FILL,
+                    TreeConfig.DEFAULT_REINSERT_FRACTION, SplitPolicy.QUADRATIC));
+            sweep.add(TreeConfig.forCapacity(DIMENSIONS, 50).withReinsertOrder(ReinsertOrder.FAR));
+            sweep.add(TreeConfig.forCapacity(DIMENSIONS, 50, TreeConfig.DEFAULT_MIN_FILL, 0.0, SplitPolicy.RSTAR));
+            for (TreeConfig cfg : sweep) {
+                new java.io.File("sweep.dat").delete();
+                DataFile dfC = new DataFile("sweep.dat", DIMENSIONS);
+                IndexFile idxC = new IndexFile("sweep.idx", DIMENSIONS, cfg.getPageSize());
+                idxC.setDurability(IndexFile.Durability.ON_FLUSH, 0);
+                RStarTree treeC = new RStarTree(DIMENSIONS, dfC, idxC, cfg);
+
+                long tc0 = System.nanoTime();
+                for (int i = 0; i < allPointers.size(); i++) {
+                    treeC.insertPointer(allPointers.get(i), allCoords.get(i));
+                }
+                treeC.flush();
+                long tc1 = System.nanoTime();
+
+                BufferPool pool = treeC.getBufferPool();
+                double radius = 0.0005;
+                pool.resetStats();
+                long tr0 = System.nanoTime();
+                for (double[] center : strategyPoints) {
+                    double[] minR = { center[0] - radius, center[1] - radius };
+                    double[] maxR = { center[0] + radius, center[1] + radius };
+                    treeC.rangeQuery(minR, maxR);
+                }
+                long tr1 = System.nanoTime();
+                long rangeVisits = pool.getHits() + pool.getMisses();
+
+                long tk0 = System.nanoTime();
+                for (double[] q : strategyPoints) {
+                    treeC.kNNQuery(q, K_NEIGHBORS);
+                }
+                long tk1 = System.nanoTime();
+
+                int nq = strategyPoints.size();
+                System.out.printf("   %-62s ύψος %d, index %7.1f KB | insert: %8.2f ms, %.3f splits/ins | range: %6.1f κόμβοι, %6.3f ms | k-NN: %6.3f ms%n",
+                        cfg, treeC.getHeight(), new java.io.File("sweep.idx").length() / 1024.0,
+                        (tc1 - tc0) / 1_000_000.0, (double) treeC.getSplits() / treeC.getInserts(),
+                        (double) rangeVisits / nq, (tr1 - tr0) / 1_000_000.0 / nq,
+                        (tk1 - tk0) / 1_000_000.0 / nq);
+
+                treeC.close();
+
+                dfC.close();
+            }
+            new java.io.File("sweep.dat").delete();
+            new java.io.File("sweep.idx").delete();
+            new java.io.File("sweep.dat" + DataFile.COLUMNS_SUFFIX).delete();
 
 
             // 5) Προετοιμασία τυχαίων σημείων για queries
@@ -89,12 +228,15 @@ public class Benchmark {
             List<double[]> samplePoints = pickRandomCoordinates(records, NUM_POINTS_FOR_QUERIES);
 
 
-            // 6) Εκτέλεση Range Queries
+            // 6) Εκτέλεση Range Queries (το index του βήματος 4 ανοίγει ξανά μόνο για ανάγνωση, χωρίς rebuild)
             System.out.println("\n6) Ερωτήματα περιοχής (Range Queries):");
             DataFile dfSerialRange = new DataFile(DATAFILE_NAME, DIMENSIONS);
-            IndexFile idxForRange = new IndexFile(INDEXFILE_NAME, DIMENSIONS);
-            RStarTree treeForRange = new RStarTree(DIMENSIONS, dfSerialRange, idxForRange);
-            treeForRange.bulkLoad(records);
+            long tOpen0 = System.nanoTime();
+            IndexFile idxForRange = IndexFile.openReadOnly(INDEXFILE_NAME);
+            RStarTree treeForRange = RStarTree.open(dfSerialRange, idxForRange);
+            long tOpen1 = System.nanoTime();
+            System.out.printf("   Άνοιγμα υπάρχοντος index: %.2f ms (%d σημεία, ύψος %d)%n",
+                    (tOpen1 - tOpen0) / 1_000_000.0, treeForRange.size(), treeForRange.getHeight());
 
             double totalSerialRangeTime = 0.0;
             double totalIndexRangeTime  = 0.0;
@@ -121,14 +263,78 @@ public class Benchmark {
             System.out.printf("   Μέσος χρόνος RangeQuery (R*-tree): %.2f ms%n",
                     totalIndexRangeTime / NUM_RANGE_QUERIES);
 
+            // 6.0) Τα ίδια παράθυρα ως ένα batch (μία διάσχιση του δέντρου)
+            List<MBR> windows = new ArrayList<>(NUM_RANGE_QUERIES);
+            for (int i = 0; i < NUM_RANGE_QUERIES; i++) {
+                double[] center = samplePoints.get(i);
+                double radius = 0.01;
+                windows.add(new MBR(new double[]{ center[0] - radius, center[1] - radius },
+                        new double[]{ center[0] + radius, center[1] + radius }));
+            }
+            long tb0 = System.nanoTime();
+            treeForRange.rangeQueryBatch(windows);
+            long tb1 = System.nanoTime();
+            System.out.printf("   Μέσος χρόνος RangeQuery (R*-tree, batch %d): %.2f ms%n",
+                    NUM_RANGE_QUERIES, (tb1 - tb0) / 1_000_000.0 / NUM_RANGE_QUERIES);
+
+            // 6.0) Μεγάλο παράθυρο: ολόκληρη λίστα vs τα πρώτα 10 από lazy cursor
+            double[] bigMin = { samplePoints.get(0)[0] - 0.1, samplePoints.get(0)[1] - 0.1 };
+            double[] bigMax = { samplePoints.get(0)[0] + 0.1, samplePoints.get(0)[1] + 0.1 };
+            long tc0 = System.nanoTime();
+            int fullCount = treeForRange.rangeQuery(bigMin, bigMax).size();
+            long tc1 = System.nanoTime();
+            try (QueryCursor cursor = treeForRange.rangeCursor(bigMin, bigMax)) {
+                cursor.stream().limit(10).count();
+            }
+            long tc2 = System.nanoTime();
+            System.out.printf("   R = 0.1: όλα τα %d αποτελέσματα: %.2f ms, πρώτα 10 (cursor): %.2f ms%n",
+                    fullCount, (tc1 - tc0) / 1_000_000.0, (tc2 - tc1) / 1_000_000.0);
+            long tc3 = System.nanoTime();
+            long counted = treeForRange.countInRange(bigMin, bigMax);
+            long tc4 = System.nanoTime();
+            System.out.printf("   R = 0.1: countInRange = %d σε %.2f ms%n", counted, (tc4 - tc3) / 1_000_000.0);
+
+            // 6.1) Ανάκτηση των records των αποτελεσμάτων: FileChannel vs memory-mapped, ένα-ένα vs readRecords
+            List<RecordPointer> fetchSet = new ArrayList<>();
+            for (int i = 0; i < NUM_RANGE_QUERIES; i++) {
+                double[] center = samplePoints.get(i);
+                double radius = 0.01;
+                fetchSet.addAll(treeForRange.rangeQuery(
+                        new double[] { center[0] - radius, center[1] - radius },
+                        new double[] { center[0] + radius, center[1] + radius }));
+            }
+            long tf0 = System.nanoTime();
+            for (RecordPointer rp : fetchSet) {
+                dfSerialRange.readRecord(rp);
+            }
+            long tf1 = System.nanoTime();
+            dfSerialRange.readRecords(fetchSet);
+            long tf1b = System.nanoTime();
+            dfSerialRange.setMemoryMapped(true);
+            idxForRange.setMemoryMapped(true);
+            long tf2 = System.nanoTime();
+            for (RecordPointer rp : fetchSet) {
+                dfSerialRange.readRecord(rp);
+            }
+            long tf3 = System.nanoTime();
+            dfSerialRange.readRecords(fetchSet);
+            long tf4 = System.nanoTime();
+            dfSerialRange.readRecords(fetchSet, DataFile.Projection.COORDS);
+            long tf5 = System.nanoTime();
+            System.out.printf("   Ανάκτηση %d records (FileChannel): %.2f ms, (mmap): %.2f ms%n",
+                    fetchSet.size(), (tf1 - tf0) / 1_000_000.0, (tf3 - tf2) / 1_000_000.0);
+            System.out.printf("   readRecords (FileChannel): %.2f ms, (mmap): %.2f ms, μόνο coords (mmap): %.2f ms%n",
+                    (tf1b - tf1) / 1_000_000.0, (tf4 - tf3) / 1_000_000.0, (tf5 - tf4) / 1_000_000.0);
+
 
             // 6.5) χρόνοι vs R
             double[] radii = { 0.002, 0.005, 0.01, 0.02, 0.05, 0.1};  // τιμές δοκιμών
             int repeatsPerR = 100;  // πόσες φορές εκτελούμε (με διαφορετικά σημεία) για κάθε R
 
-            System.out.println("\n6.5) Χρόνοι RangeQuery vs ακτίνα R:");
+            System.out.println("\n6.5) Χρόνοι RangeQuery vs ακτίνα R (παράλληλο: "
+                    + treeForRange.getParallelism() + " threads):");
             for (double radius : radii) {
-                double totalSerial = 0, totalIndex = 0;
+                double totalSerial = 0, totalIndex = 0, totalParallel = 0;
                 // Για κάθε R παίρνουμε repeatsPerR τυχαία κέντρα
                 for (int t = 0; t < repeatsPerR; t++) {
                     double[] center = samplePoints.get(t);
@@ -146,23 +352,30 @@ public class Benchmark {
                     treeForRange.rangeQuery(minR, maxR);
                     long ti1 = System.nanoTime();
                     totalIndex += (ti1 - ti0) / 1_000_000.0;
+
+                    // Με R*-tree, fork/join
+                    long tp0 = System.nanoTime();
+                    treeForRange.rangeQueryParallel(minR, maxR);
+                    long tp1 = System.nanoTime();
+                    totalParallel += (tp1 - tp0) / 1_000_000.0;
                 }
-                double avgSerial = totalSerial / repeatsPerR;
-                double avgIndex  = totalIndex  / repeatsPerR;
-                System.out.printf("   R = %.3f - Serial avg: %.2f ms, R*-tree avg: %.2f ms%n",
-                        radius, avgSerial, avgIndex);
+                double avgSerial   = totalSerial   / repeatsPerR;
+                double avgIndex    = totalIndex    / repeatsPerR;
+                double avgParallel = totalParallel / repeatsPerR;
+                System.out.printf("   R = %.3f - Serial avg: %.2f ms, R*-tree avg: %.2f ms, R*-tree παράλληλο avg: %.2f ms%n",
+                        radius, avgSerial, avgIndex, avgParallel);
             }
 
+            treeForRange.close();
+
             dfSerialRange.close();
-            idxForRange.close();
 
 
             // 7) Εκτέλεση k-NN Queries
             System.out.println("\n7) Ερωτήματα k-NN:");
             DataFile dfSerialKNN = new DataFile(DATAFILE_NAME, DIMENSIONS);
-            IndexFile idxForKNN = new IndexFile(INDEXFILE_NAME, DIMENSIONS);
-            RStarTree treeForKNN = new RStarTree(DIMENSIONS, dfSerialKNN, idxForKNN);
-            treeForKNN.bulkLoad(records);
+            IndexFile idxForKNN = IndexFile.openReadOnly(INDEXFILE_NAME);
+            RStarTree treeForKNN = RStarTree.open(dfSerialKNN, idxForKNN);
 
             double totalSerialKnnTime = 0.0;
             double totalIndexKnnTime  = 0.0;
@@ -185,16 +398,20 @@ public class Benchmark {
                     totalSerialKnnTime / NUM_KNN_QUERIES);
             System.out.printf("   Μέσος χρόνος k-NN (R*-tree): %.2f ms%n",
                     totalIndexKnnTime / NUM_KNN_QUERIES);
+            long tbn0 = System.nanoTime();
+            treeForKNN.kNNQueryBatch(samplePoints.subList(0, NUM_KNN_QUERIES), K_NEIGHBORS);
+            long tbn1 = System.nanoTime();
+            System.out.printf("   Μέσος χρόνος k-NN (R*-tree, batch %d): %.2f ms%n",
+                    NUM_KNN_QUERIES, (tbn1 - tbn0) / 1_000_000.0 / NUM_KNN_QUERIES);
+            treeForKNN.close();
             dfSerialKNN.close();
-            idxForKNN.close();
 
 
             // 8) Εκτέλεση Skyline Query
             System.out.println("\n8) Ερώτημα Skyline:");
             DataFile dfSerialSky = new DataFile(DATAFILE_NAME, DIMENSIONS);
-            IndexFile idxForSky = new IndexFile(INDEXFILE_NAME, DIMENSIONS);
-            RStarTree treeForSky = new RStarTree(DIMENSIONS, dfSerialSky, idxForSky);
-            treeForSky.bulkLoad(records);
+            IndexFile idxForSky = IndexFile.openReadOnly(INDEXFILE_NAME);
+            RStarTree treeForSky = RStarTree.open(dfSerialSky, idxForSky);
 
             // 8.1) Σειριακό Skyline (brute‐force)
             long tss0 = System.nanoTime();
@@ -210,18 +427,17 @@ public class Benchmark {
 
             System.out.printf("   Χρόνος Skyline (σειριακό): %.2f ms%n", deltaSerialSky);
             System.out.printf("   Χρόνος Skyline (R*-tree): %.2f ms%n", deltaIndexSky);
+            treeForSky.close();
             dfSerialSky.close();
-            idxForSky.close();
 
 
             // 9) Μετρήσεις k-NN για 100 τυχαία σημεία, όσο μεγαλώνει το k
             System.out.println("\n9) Μετρήσεις k-NN όσο μεγαλώνει το k (avg από queries 100 τυχαίων σημείων.)");
 
-            // Ετοιμάζουμε DataFile, IndexFile και δέντρο (με bulkLoad)
+            // Ετοιμάζουμε DataFile, IndexFile και δέντρο (άνοιγμα του index του βήματος 4)
             DataFile dfKnn2 = new DataFile(DATAFILE_NAME, DIMENSIONS);
-            IndexFile idxKnn2 = new IndexFile(INDEXFILE_NAME, DIMENSIONS);
-            RStarTree treeKnn2 = new RStarTree(DIMENSIONS, dfKnn2, idxKnn2);
-            treeKnn2.bulkLoad(records);
+            IndexFile idxKnn2 = IndexFile.openReadOnly(INDEXFILE_NAME);
+            RStarTree treeKnn2 = RStarTree.open(dfKnn2, idxKnn2);
 
             // Δημιουργούμε 100 τυχαία query σημεία
             List<double[]> queryPoints = pickRandomCoordinates(records, 100);
@@ -254,8 +470,34 @@ public class Benchmark {
             }
 
             // Κλείσιμο αρχείων
+            treeKnn2.close();
             dfKnn2.close();
-            idxKnn2.close();
+
+
+            // 10) Ταυτόχρονοι αναγνώστες (range + k-NN), χωρίς και με έναν writer που κάνει insert
+            System.out.println("\n10) Ταυτόχρονα ερωτήματα (optimistic αναγνώστες, ένας writer):");
+            DataFile dfConc = new DataFile(DATAFILE_NAME, DIMENSIONS);
+            IndexFile idxConc = new IndexFile("concurrency.idx", DIMENSIONS);
+            idxConc.setDurability(IndexFile.Durability.ON_FLUSH, 0);
+            RStarTree treeConc = new RStarTree(DIMENSIONS, dfConc, idxConc);
+            for (int i = 0; i < allPointers.size(); i++) {
+                treeConc.insertPointer(allPointers.get(i), allCoords.get(i));
+            }
+            int cores = Runtime.getRuntime().availableProcessors();
+            TreeSet<Integer> threadCounts = new TreeSet<>(Arrays.asList(1, 2, 4, cores));
+            for (int threads : threadCounts) {
+                for (boolean withWriter : new boolean[] { false, true }) {
+                    long retries0 = treeConc.getOptimisticRetries();
+                    long[] counts = runConcurrentQueries(treeConc, samplePoints, allPointers, allCoords,
+                            threads, withWriter, 1000);
+                    System.out.printf("   %2d αναγνώστες%-9s: %8d ερωτήματα/s, %7d inserts/s, %d επαναλήψεις%n",
+                            threads, withWriter ? " + writer" : "", counts[0], counts[1],
+                            treeConc.getOptimisticRetries() - retries0);
+                }
+            }
+            treeConc.close();
+            dfConc.close();
+            new java.io.File("concurrency.idx").delete();
 
 
             System.out.println("\n== Ολοκλήρωση Benchmark ==");
@@ -328,51 +570,89 @@ public class Benchmark {
         return new String(buf);
     }
 
+    /**
+     * Τρέχει για millis ms threads αναγνώστες (range R = 0.005 και k-NN εναλλάξ) και,
+     * αν withWriter, έναν writer που ξαναεισάγει σημεία με insertPointer.
+     *
+     * @return { ερωτήματα, inserts } που ολοκληρώθηκαν.
+     */
+    private static long[] runConcurrentQueries(RStarTree tree, List<double[]> points,
+                                               List<RecordPointer> pointers, List<double[]> coords,
+                                               int threads, boolean withWriter, long millis)
+            throws IOException {
+        AtomicBoolean stop = new AtomicBoolean();
+        AtomicLong queries = new AtomicLong();
+        AtomicLong writes = new AtomicLong();
+        AtomicReference<IOException> failure = new AtomicReference<>();
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final int offset = t;
+            workers.add(new Thread(() -> {
+                try {
+                    for (int i = offset; !stop.get(); i++) {
+                        double[] c = points.get(i % points.size());
+                        if ((i & 1) == 0) {
+                            double r = 0.005;
+                            tree.rangeQuery(new double[] { c[0] - r, c[1] - r }, new double[] { c[0] + r, c[1] + r });
+                        } else {
+                            tree.kNNQuery(c, K_NEIGHBORS);
+                        }
+                        queries.incrementAndGet();
+                    }
+                } catch (IOException e) {
+                    failure.set(e);
+                }
+            }));
+        }
+        if (withWriter) {
+            workers.add(new Thread(() -> {
+                try {
+                    for (int i = 0; !stop.get(); i++) {
+                        tree.insertPointer(pointers.get(i % pointers.size()), coords.get(i % coords.size()));
+                        writes.incrementAndGet();
+                    }
+                } catch (IOException e) {
+                    failure.set(e);
+                }
+            }));
+        }
+        for (Thread w : workers) w.start();
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        stop.set(true);
+        for (Thread w : workers) {
+            try {
+                w.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+        return new long[] { queries.get() * 1000 / millis, writes.get() * 1000 / millis };
+    }
+
     private static List<RecordPointer> rangeQuerySerial(DataFile df,
                                                         double[] minCoords,
                                                         double[] maxCoords) throws IOException {
         List<RecordPointer> result = new ArrayList<>();
-        FileChannel channel = df.getChannel();
-        int blockSize    = DataFile.BLOCK_SIZE;
-        long fileSize    = channel.size();
-        int totalBlocks  = (int) (fileSize / blockSize);
-        int dim          = df.getDimension();
-        int recordSize   = df.getRecordSize();
-
-        // Ξεκινάμε από το block 1 (το block 0 είναι metadata)
-        for (int blkId = 1; blkId < totalBlocks; blkId++) {
-            long blockOffset = (long) blkId * blockSize;
-            // Διαβάζουμε το live count από τα πρώτα 4 bytes
-            ByteBuffer headerBuf = ByteBuffer.allocate(4);
-            channel.read(headerBuf, blockOffset);
-            headerBuf.flip();
-            int live = headerBuf.getInt();
-
-            for (int slot = 0; slot < live; slot++) {
-                long slotPos = blockOffset + 4L + (long) slot * recordSize;
-                ByteBuffer idBuf = ByteBuffer.allocate(8);
-                channel.read(idBuf, slotPos);
-                idBuf.flip();
-                long id = idBuf.getLong();
-                if (id == -1L) continue; // διαγραμμένο (ή άκυρο)
-
-                long coordsPos = slotPos + 8 + 256;
-                ByteBuffer coordsBuf = ByteBuffer.allocate(8 * dim);
-                channel.read(coordsBuf, coordsPos);
-                coordsBuf.flip();
-                double[] coords = new double[dim];
-                for (int i = 0; i < dim; i++) {
-                    coords[i] = coordsBuf.getDouble();
-                }
+        int dim = df.getDimension();
+        try (DataScan scan = df.openScan()) {
+            while (scan.next()) {
                 boolean inside = true;
                 for (int i = 0; i < dim; i++) {
-                    if (coords[i] < minCoords[i] || coords[i] > maxCoords[i]) {
+                    double c = scan.coord(i);
+                    if (c < minCoords[i] || c > maxCoords[i]) {
                         inside = false;
                         break;
                     }
                 }
                 if (inside) {
-                    result.add(new RecordPointer(blkId, slot));
+                    result.add(scan.pointer());
                 }
             }
         }
@@ -390,45 +670,15 @@ public class Benchmark {
             }
         }
         List<Pair> distList = new ArrayList<>();
-
-        FileChannel channel = df.getChannel();
-        int blockSize    = DataFile.BLOCK_SIZE;
-        long fileSize    = channel.size();
-        int totalBlocks  = (int) (fileSize / blockSize);
-        int dim          = df.getDimension();
-        int recordSize   = df.getRecordSize();
-
-        for (int blkId = 1; blkId < totalBlocks; blkId++) {
-            long blockOffset = (long) blkId * blockSize;
-            // Διαβάζουμε live count
-            ByteBuffer headerBuf = ByteBuffer.allocate(4);
-            channel.read(headerBuf, blockOffset);
-            headerBuf.flip();
-            int live = headerBuf.getInt();
-
-            for (int slot = 0; slot < live; slot++) {
-                long slotPos = blockOffset + 4L + (long) slot * recordSize;
-                ByteBuffer idBuf = ByteBuffer.allocate(8);
-                channel.read(idBuf, slotPos);
-                idBuf.flip();
-                long id = idBuf.getLong();
-                if (id == -1L) continue;
-
-                long coordsPos = slotPos + 8 + 256;
-                ByteBuffer coordsBuf = ByteBuffer.allocate(8 * dim);
-                channel.read(coordsBuf, coordsPos);
-                coordsBuf.flip();
-                double[] coords = new double[dim];
-                for (int i = 0; i < dim; i++) {
-                    coords[i] = coordsBuf.getDouble();
-                }
+        int dim = df.getDimension();
+        try (DataScan scan = df.openScan()) {
+            while (scan.next()) {
                 double dist2 = 0;
                 for (int i = 0; i < dim; i++) {
-                    double diff = coords[i] - queryPt[i];
+                    double diff = scan.coord(i) - queryPt[i];
                     dist2 += diff * diff;
                 }
-                distList.add(new Pair(Math.sqrt(dist2),
-                        new RecordPointer(blkId, slot)));
+                distList.add(new Pair(Math.sqrt(dist2), scan.pointer()));
             }
         }
 
@@ -447,40 +697,12 @@ public class Benchmark {
             RecordPointer rp;
         }
         List<PointWithRP> points = new ArrayList<>();
-
-        FileChannel channel = df.getChannel();
-        int blockSize    = DataFile.BLOCK_SIZE;
-        long fileSize    = channel.size();
-        int totalBlocks  = (int) (fileSize / blockSize);
-        int dim          = df.getDimension();
-        int recordSize   = df.getRecordSize();
-
-        for (int blkId = 1; blkId < totalBlocks; blkId++) {
-            long blockOffset = (long) blkId * blockSize;
-            ByteBuffer headerBuf = ByteBuffer.allocate(4);
-            channel.read(headerBuf, blockOffset);
-            headerBuf.flip();
-            int live = headerBuf.getInt();
-
-            for (int slot = 0; slot < live; slot++) {
-                long slotPos = blockOffset + 4L + (long) slot * recordSize;
-                ByteBuffer idBuf = ByteBuffer.allocate(8);
-                channel.read(idBuf, slotPos);
-                idBuf.flip();
-                long id = idBuf.getLong();
-                if (id == -1L) continue;
-
-                long coordsPos = slotPos + 8 + 256;
-                ByteBuffer coordsBuf = ByteBuffer.allocate(8 * dim);
-                channel.read(coordsBuf, coordsPos);
-                coordsBuf.flip();
-                double[] coords = new double[dim];
-                for (int i = 0; i < dim; i++) {
-                    coords[i] = coordsBuf.getDouble();
-                }
+        try (DataScan scan = df.openScan()) {
+            while (scan.next()) {
                 PointWithRP p = new PointWithRP();
-                p.coords = coords;
-                p.rp = new RecordPointer(blkId, slot);
+                p.coords = new double[df.getDimension()];
+                scan.coords(p.coords);
+                p.rp = scan.pointer();
                 points.add(p);
             }
         }
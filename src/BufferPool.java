@@ -0,0 +1,309 @@
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Buffer pool (page cache) ανάμεσα στο RStarTree και στο IndexFile.
+ * Κρατάει στη μνήμη τους κόμβους (Node) που διαβάστηκαν/γράφτηκαν πρόσφατα,
+ * ώστε οι επαναλαμβανόμενες προσπελάσεις στα ανώτερα επίπεδα να μη φτάνουν στον δίσκο.
+ *
+ *   – Αντικατάσταση second-chance (clock), προσέγγιση του LRU, με όριο σελίδων (capacity).
+ *   – Οι κόμβοι με level ≥ pinLevel και όσες σελίδες έχουν γίνει pin() δεν εκδιώκονται ποτέ.
+ *   – Οι εγγραφές είναι write-back: η σελίδα σημειώνεται dirty και γράφεται στο
+ *     IndexFile μόνο όταν εκδιωχθεί ή όταν καλεστεί flush().
+ *   – Thread-safe: κάθε σελίδα που βρίσκεται στη μνήμη διαβάζεται χωρίς κλείδωμα (ένα hit
+ *     απλώς σημειώνει το reference bit της)· synchronized είναι μόνο τα misses, οι εγγραφές,
+ *     τα pin/unpin και οι εκδιώξεις.
+ *   – Κάθε σελίδα έχει έκδοση (seqlock) για τους optimistic αναγνώστες του RStarTree:
+ *     ο (μοναδικός) writer την κάνει περιττή με beginWrite() πριν αλλάξει τον κόμβο
+ *     και ξανά άρτια με endWrite() όταν τελειώσει.
+ */
+public class BufferPool {
+    public static final int DEFAULT_CAPACITY  = 1024; // σελίδες
+    public static final int DEFAULT_PIN_LEVEL = 2;    // κόμβοι επιπέδου ≥ 2 μένουν πάντα στη μνήμη
+
+    private final IndexFile indexFile;
+    private final int capacity;
+    private final int pinLevel;
+
+    /** Σελίδα που μπορεί να εκδιωχθεί, με το reference bit του clock. */
+    private static final class Frame {
+        final int pageId;
+        volatile Node node;
+        volatile boolean referenced;
+
+        Frame(int pageId, Node node) {
+            this.pageId = pageId;
+            this.node = node;
+        }
+    }
+
+    // Σελίδες που μπορούν να εκδιωχθούν· διαβάζονται χωρίς κλείδωμα
+    private final Map<Integer, Frame> frames = new ConcurrentHashMap<>();
+    // Σειρά του clock (υπό το lock): ένα frame που δεν είναι πια στο frames απλώς προσπερνιέται
+    private final ArrayDeque<Frame> clock = new ArrayDeque<>();
+    // Σελίδες που δεν εκδιώκονται (pinned ή ανώτερα επίπεδα)· διαβάζονται χωρίς κλείδωμα
+    private final Map<Integer, Node> resident = new ConcurrentHashMap<>();
+    private final Map<Integer, Integer> pinCounts = new HashMap<>();
+    private final Set<Integer> dirty = new HashSet<>();
+
+    // Εκδόσεις σελίδων· αλλάζουν μόνο από τον writer, οπότε η αντιγραφή στο grow είναι ασφαλής
+    private volatile AtomicLongArray versions = new AtomicLongArray(1024);
+
+    private final LongAdder hits = new LongAdder();
+    private long misses;
+    private long evictions;
+    private long writeBacks;
+
+    public BufferPool(IndexFile indexFile) {
+        this(indexFile, DEFAULT_CAPACITY, DEFAULT_PIN_LEVEL);
+    }
+
+    /**
+     * @param indexFile Το IndexFile που αποθηκεύει μόνιμα τους κόμβους.
+     * @param capacity  Μέγιστος αριθμός (μη pinned) σελίδων στη μνήμη.
+     * @param pinLevel  Κόμβοι με level ≥ pinLevel δεν εκδιώκονται ποτέ.
+     */
+    public BufferPool(IndexFile indexFile, int capacity, int pinLevel) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("BufferPool: capacity πρέπει να είναι ≥ 1");
+        }
+        this.indexFile = indexFile;
+        this.capacity = capacity;
+        this.pinLevel = pinLevel;
+    }
+
+    /**
+     * Επιστρέφει τον κόμβο της σελίδας pageId, από τη μνήμη αν υπάρχει,
+     * αλλιώς από το IndexFile.
+     */
+    public Node readNode(int pageId) throws IOException {
+        Node n = resident.get(pageId);
+        if (n != null) {
+            hits.increment();
+            return n;
+        }
+        Frame f = frames.get(pageId);
+        if (f != null) {
+            f.referenced = true;
+            hits.increment();
+            return f.node;
+        }
+        return readMiss(pageId);
+    }
+
+    private synchronized Node readMiss(int pageId) throws IOException {
+        // Ίσως τη διάβασε στο μεταξύ άλλο thread
+        Node n = resident.get(pageId);
+        if (n == null) {
+            Frame f = frames.get(pageId);
+            n = (f != null) ? f.node : null;
+        }
+        if (n != null) {
+            hits.increment();
+            return n;
+        }
+        misses++;
+        n = indexFile.readNode(pageId);
+        if (n != null) {
+            cache(pageId, n);
+            evictIfNeeded();
+        }
+        return n;
+    }
+
+    /**
+     * Καταχωρεί τον κόμβο στη σελίδα pageId, τον σημειώνει dirty και δημοσιεύει την
+     * κατάστασή του στους αναγνώστες (Node.publish()).
+     * Αν pageId<0, δεσμεύεται νέα σελίδα από το IndexFile.
+     * Επιστρέφει το pageId όπου καταχωρήθηκε.
+     */
+    public synchronized int writeNode(int pageId, Node node) throws IOException {
+        if (pageId < 0) {
+            pageId = indexFile.allocatePage();
+            // Ίσως σελίδα της free list: όποιος αναγνώστης είδε τον παλιό της κόμβο πρέπει να αποτύχει
+            versionsFor(pageId).addAndGet(pageId, 2);
+        }
+        node.setPageId(pageId);
+        node.publish();
+        cache(pageId, node);
+        dirty.add(pageId);
+        evictIfNeeded();
+        return pageId;
+    }
+
+    /**
+     * Αποδεσμεύει τη σελίδα pageId: αφαιρείται από τη μνήμη (χωρίς write-back)
+     * και επιστρέφεται στη free list του IndexFile.
+     */
+    public synchronized void freePage(int pageId) throws IOException {
+        // Η σελίδα αλλάζει περιεχόμενο: όποιος αναγνώστης την έχει δει πρέπει να αποτύχει
+        versionsFor(pageId).addAndGet(pageId, 2);
+        frames.remove(pageId);
+        resident.remove(pageId);
+        pinCounts.remove(pageId);
+        dirty.remove(pageId);
+        indexFile.freePage(pageId);
+    }
+
+    /** Η σελίδα pageId δεν θα εκδιωχθεί μέχρι το αντίστοιχο unpin(). */
+    public synchronized void pin(int pageId) {
+        pinCounts.merge(pageId, 1, Integer::sum);
+        Frame f = frames.get(pageId);
+        if (f != null) {
+            // Πρώτα στο resident, ώστε ένας αναγνώστης χωρίς κλείδωμα να τη βρίσκει πάντα κάπου
+            resident.put(pageId, f.node);
+            frames.remove(pageId);
+        }
+    }
+
+    public synchronized void unpin(int pageId) {
+        Integer c = pinCounts.get(pageId);
+        if (c == null) return;
+        if (c > 1) {
+            pinCounts.put(pageId, c - 1);
+            return;
+        }
+        pinCounts.remove(pageId);
+        Node n = resident.get(pageId);
+        if (n != null && n.getLevel() < pinLevel) {
+            addFrame(pageId, n);
+            resident.remove(pageId);
+        }
+    }
+
+    /** Γράφει όλες τις dirty σελίδες στο IndexFile. */
+    public synchronized void flush() throws IOException {
+        if (dirty.isEmpty()) return;
+        // Γράφουμε με αύξουσα σειρά σελίδων για σειριακή προσπέλαση στον δίσκο
+        List<Integer> pages = new ArrayList<>(dirty);
+        Collections.sort(pages);
+        for (int pageId : pages) {
+            Node n = resident.get(pageId);
+            if (n == null) {
+                Frame f = frames.get(pageId);
+                n = (f != null) ? f.node : null;
+            }
+            if (n != null) {
+                indexFile.writeNode(pageId, n);
+                writeBacks++;
+            }
+        }
+        dirty.clear();
+    }
+
+    /** @return Η τρέχουσα έκδοση της σελίδας· περιττή όσο ο writer την τροποποιεί. */
+    public long pageVersion(int pageId) {
+        AtomicLongArray v = versions;
+        return pageId < v.length() ? v.get(pageId) : 0L;
+    }
+
+    /** Ο writer αρχίζει να τροποποιεί τον κόμβο της σελίδας (η έκδοση γίνεται περιττή). */
+    public void beginWrite(int pageId) {
+        versionsFor(pageId).incrementAndGet(pageId);
+    }
+
+    /** Ο writer τελείωσε με τη σελίδα (η έκδοση γίνεται ξανά άρτια). */
+    public void endWrite(int pageId) {
+        versionsFor(pageId).incrementAndGet(pageId);
+    }
+
+    private AtomicLongArray versionsFor(int pageId) {
+        AtomicLongArray v = versions;
+        if (pageId >= v.length()) {
+            AtomicLongArray grown = new AtomicLongArray(Math.max(pageId + 1, 2 * v.length()));
+            for (int i = 0; i < v.length(); i++) {
+                grown.set(i, v.get(i));
+            }
+            versions = grown;
+            v = grown;
+        }
+        return v;
+    }
+
+    private void cache(int pageId, Node n) {
+        if (pinCounts.containsKey(pageId) || n.getLevel() >= pinLevel) {
+            resident.put(pageId, n);
+            frames.remove(pageId);
+        } else {
+            addFrame(pageId, n);
+            resident.remove(pageId);
+        }
+    }
+
+    /** Βάζει (ή ενημερώνει) τη σελίδα στα frames, με το reference bit σημειωμένο. */
+    private void addFrame(int pageId, Node n) {
+        Frame f = frames.get(pageId);
+        if (f == null) {
+            f = new Frame(pageId, n);
+            frames.put(pageId, f);
+            clock.add(f);
+        } else {
+            f.node = n;
+        }
+        f.referenced = true;
+    }
+
+    private void evictIfNeeded() throws IOException {
+        // Το πολύ δύο περάσματα δεύτερης ευκαιρίας· μετά εκδιώκεται ό,τι βρεθεί, ώστε οι
+        // αναγνώστες που σημειώνουν reference bits να μην κρατάνε τον writer εδώ
+        int chances = 2 * frames.size();
+        while (frames.size() > capacity) {
+            Frame f = clock.poll();
+            if (f == null) break;
+            if (frames.get(f.pageId) != f) {
+                continue; // η σελίδα έγινε pin ή αποδεσμεύτηκε
+            }
+            if (f.referenced && chances-- > 0) {
+                f.referenced = false;
+                clock.add(f);
+                continue;
+            }
+            frames.remove(f.pageId);
+            if (dirty.remove(f.pageId)) {
+                indexFile.writeNode(f.pageId, f.node);
+                writeBacks++;
+            }
+            evictions++;
+        }
+        // Frames που έφυγαν με pin/freePage μένουν στη σειρά μέχρι να τα βρει το clock
+        if (clock.size() > 2 * Math.max(capacity, frames.size())) {
+            clock.removeIf(f -> frames.get(f.pageId) != f);
+        }
+    }
+
+    /** Μηδενίζει τους μετρητές (π.χ. πριν από μια σειρά ερωτημάτων). */
+    public synchronized void resetStats() {
+        hits.reset();
+        misses = evictions = writeBacks = 0;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized long getWriteBacks() {
+        return writeBacks;
+    }
+
+    /** @return Πόσες σελίδες βρίσκονται αυτή τη στιγμή στη μνήμη. */
+    public synchronized int size() {
+        return frames.size() + resident.size();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("hits=%d, misses=%d, evictions=%d, writeBacks=%d, cached=%d",
+                hits.sum(), misses, evictions, writeBacks, size());
+    }
+}
@@ -0,0 +1,12 @@
+/**
+ * Στρατηγική πακεταρίσματος για το RStarTree.bulkLoad.
+ *   X_SORT  – ταξινόμηση μόνο κατά την πρώτη συντεταγμένη και κόψιμο σε διαδοχικές ομάδες
+ *             (η αρχική υλοποίηση· μακριά, λεπτά φύλλα).
+ *   STR     – Sort-Tile-Recursive: διαδοχικά slabs ανά διάσταση, σχεδόν τετράγωνα φύλλα.
+ *   HILBERT – ταξινόμηση κατά το κλειδί Hilbert του κέντρου κάθε MBR.
+ */
+public enum BulkLoadStrategy {
+    X_SORT,
+    STR,
+    HILBERT
+}
@@ -4,116 +4,151 @@ import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
 
 public class DataFile {
     public static final int BLOCK_SIZE = 32 * 1024; // 32 KB ανά block
+    public static final long DELETED_ID = -1L;      // id σβησμένου slot (tombstone)
+    public static final int MAX_NAME_BYTES = 1024;  // μεγαλύτερα names κόβονται σε όριο χαρακτήρα UTF-8
+
+    // Μορφή των data-blocks (slotted page):
+    //   offset 0..3: πλήθος slots του καταλόγου, 4..7: freeEnd (αρχή του χώρου των records)
+    //   από το 8: κατάλογος, 4 bytes ανά slot (offset, μήκος του record μέσα στο block, ως char)
+    //   τα records γράφονται από το τέλος του block προς τα πίσω:
+    //   8 (id) + 8×dim (coords) + 2 (μήκος name) + name σε UTF-8
+    private static final int BLOCK_HEADER = 8;
+    private static final int DIR_ENTRY = 4;
+    private static final int FORMAT_VERSION = 2;    // 0 = παλιά slots σταθερού μήκους (name 256 bytes)
+    private static final int FREE_LIST_PROBES = 8;  // σβησμένα slots που εξετάζει το insertRecord πριν γράψει στο τέλος
+
+    /**
+     * Ποια πεδία αποκωδικοποιεί το readRecords:
+     *   ALL     – id, name και coords.
+     *   COORDS  – id και coords, από τις γραμμές του sidecar (name == null).
+     *   ID_NAME – id και name (coords == null).
+     */
+    public enum Projection { ALL, COORDS, ID_NAME }
+
+    /** Callback για το scan(): δέχεται ένα έγκυρο record χωρίς να φορτώνει το name του. */
+    public interface RecordVisitor {
+        void visit(long id, double[] coords, RecordPointer rp) throws IOException;
+    }
 
     private final int dimension;        // διάσταση των συντεταγμένων (π.χ. 2)
-    private final int recordSize;       // 8 (id) + 256 (name) + 8×dim (coords)
-    private final int slotsPerBlock;    // (BLOCK_SIZE - 4 bytes header) / recordSize
+    private final int recordSize;       // σταθερό μέρος ενός record: 8 (id) + 8×dim (coords) + 2 (μήκος name)
+    private final int slotsPerBlock;    // μέγιστο πλήθος slots ανά block (records με κενό name)
     private final FileChannel channel;
     private final String filename;
+    private MappedRegion mapped;        // αν != null, οι αναγνώσεις γίνονται μέσω mmap
+
+    // Columnar sidecar (filename + COLUMNS_SUFFIX): μία γραμμή ανά slot, 8 (id) + 8×dim (coords),
+    // πυκνά: οι γραμμές του block b ξεκινούν από τη rowBase[b] και είναι όσα τα slots του, οπότε
+    // η γραμμή του (blockId, slotId) είναι η rowBase[blockId] + slotId. Οι σαρώσεις διαβάζουν
+    // μόνο αυτό, χωρίς να περνούν από I/O τα names. Νέα slots μπαίνουν μόνο στο τελευταίο
+    // block, άρα νέες γραμμές μόνο στο τέλος του sidecar· το rowBase ξαναχτίζεται στο άνοιγμα
+    // από τα headers των blocks.
+    public static final String COLUMNS_SUFFIX = ".cols";
+    private final FileChannel columns;
+    private final int columnRowBytes;
+    private int[] rowBase = new int[16]; // rowBase[b]: πρώτη γραμμή του data-block b στο sidecar
+    private MappedRegion mappedColumns;
+    private final ArrayDeque<ByteBuffer> scanBuffers = new ArrayDeque<>(); // direct buffers για τα DataScan
 
     private int currentBlockId; // το τρέχον data-block στο οποίο γράφουμε (ξεκινάει από 1)
     private int nextSlot;       // θέση (slot index) μέσα στο currentBlockId (0..slotsPerBlock-1)
+    private int currentFreeEnd; // freeEnd του currentBlockId
     private int totalRecords;   // συνολικό πλήθος εγγραφών
     private int totalBlocks;    // συνολικό πλήθος blocks (συμπεριλαμβανομένου του block 0)
 
+    // Free list: αλυσίδα σβησμένων slots· κάθε tombstone κρατάει μετά το id τον
+    // δείκτη (blockId, slotId) του επόμενου. freeHeadBlock == 0 σημαίνει κενή λίστα.
+    private int freeHeadBlock;
+    private int freeHeadSlot;
+    private int freeSlots;
+
     /**
      * Δημιουργεί (ή ανοίγει) το αρχείο δεδομένων.
      * Το block 0 κρατάει metadata, τα data blocks ξεκινούν από block 1.
      *
      * @param filename Το όνομα αρχείου (π.χ. "map.dbf").
      * @param dim      Η διάσταση (π.χ. 2).
-     * @throws IOException σε περίπτωση I/O σφάλματος.
+     * @throws IOException σε περίπτωση I/O σφάλματος, ή αν το αρχείο έχει την παλιά μορφή.
      */
     public DataFile(String filename, int dim) throws IOException {
         this.filename = filename;
         this.dimension = dim;
-        // Κάθε record: 8 bytes id + 256 bytes name + 8×dim bytes coords
-        this.recordSize = 8 + 256 + 8 * dim;
-        // Σε κάθε data-block, header = 4 bytes (liveCount), και μετά τα record slots
-        this.slotsPerBlock = (BLOCK_SIZE - 4) / recordSize;
+        // Σταθερό μέρος κάθε record: 8 bytes id + 8×dim bytes coords + 2 bytes μήκος name
+        this.recordSize = 8 + 8 * dim + 2;
+        // Κάθε slot πιάνει τουλάχιστον μία θέση καταλόγου και το σταθερό μέρος του record
+        this.slotsPerBlock = (BLOCK_SIZE - BLOCK_HEADER) / (DIR_ENTRY + recordSize);
+        this.columnRowBytes = 8 + 8 * dim;
 
         File f = new File(filename);
-        if (!f.exists()) {
-            // Δημιουργία νέου αρχείου, φτιάχνουμε το block 0 με metadata
-            RandomAccessFile raf = new RandomAccessFile(f, "rw");
+        boolean fresh = !f.exists();
+        RandomAccessFile raf = new RandomAccessFile(f, "rw");
+        if (fresh) {
             raf.setLength(0);
-            this.channel = raf.getChannel();
+        }
+        this.channel = raf.getChannel();
+        // Ένα αρχείο μικρότερο από ένα block δεν έχει ολόκληρο block 0 → ξεκινάμε από την αρχή
+        fresh = fresh || channel.size() < BLOCK_SIZE;
 
-            // Αρχικά: totalRecords = 0, totalBlocks = 1 (μόνο block 0 υπάρχει)
+        if (fresh) {
+            // Αρχικά: totalRecords = 0, totalBlocks = 2 (block 0 + το πρώτο data-block,
+            // ώστε το επόμενο νέο block να είναι το 2 και όχι πάλι το 1)
             this.totalRecords = 0;
-            this.totalBlocks = 1;
-
-            // Γράφουμε metadata στο block 0:
-            //   offset 0..3: totalRecords
-            //   offset 4..7: totalBlocks
-            ByteBuffer metaBuf = ByteBuffer.allocate(BLOCK_SIZE);
-            metaBuf.putInt(0); // totalRecords
-            metaBuf.putInt(1); // totalBlocks
-            metaBuf.flip();
-            channel.write(metaBuf, 0L);
+            this.totalBlocks = 2;
+            writeMetadata();
 
             // Το πρώτο data-block είναι το block 1
             this.currentBlockId = 1;
             this.nextSlot = 0;
+            setRowBase(1, 0);
+            this.currentFreeEnd = BLOCK_SIZE;
         } else {
-            // Άνοιγμα υπάρχοντος αρχείου
-            RandomAccessFile raf = new RandomAccessFile(f, "rw");
-            this.channel = raf.getChannel();
-
-            long fileSize = channel.size();
-            if (fileSize < BLOCK_SIZE) {
-                // Έστω ότι το αρχείο είναι μικρότερο από ένα block → ξεκινάμε από την αρχή
-                this.totalRecords = 0;
-                this.totalBlocks = 1;
-                ByteBuffer metaBuf = ByteBuffer.allocate(BLOCK_SIZE);
-                metaBuf.putInt(0);
-                metaBuf.putInt(1);
-                metaBuf.flip();
-                channel.write(metaBuf, 0L);
-
-                this.currentBlockId = 1;
-                this.nextSlot = 0;
-            } else {
-                // Διαβάζουμε metadata από block 0 (offset 0):
-                ByteBuffer headerBuf = ByteBuffer.allocate(8);
-                channel.read(headerBuf, 0L);
-                headerBuf.flip();
-                this.totalRecords = headerBuf.getInt();
-                this.totalBlocks = headerBuf.getInt();
-
-                // Τελευταίο data-block είναι το blockId = totalBlocks - 1
-                this.currentBlockId = totalBlocks - 1;
-                long lastBlockOffset = (long) currentBlockId * BLOCK_SIZE;
-
-                // Διαβάζουμε το liveCount (πόσα slots έχουν γραφεί) στο header του τελευταίου block
-                ByteBuffer liveBuf = ByteBuffer.allocate(4);
-                channel.read(liveBuf, lastBlockOffset);
-                liveBuf.flip();
-                int liveCountInLast = liveBuf.getInt();
-
-                if (liveCountInLast < slotsPerBlock) {
-                    // Υπάρχουν ακόμα ελεύθερα slots στο τελευταίο data-block
-                    this.nextSlot = liveCountInLast;
-                } else {
-                    // Το τελευταίο data-block είναι γεμάτο → δημιουργούμε νέο
-                    this.currentBlockId = totalBlocks; // νέο blockId
-                    this.totalBlocks++;                // αυξάνουμε τις συνολικές σελίδες
-                    this.nextSlot = 0;
-                    writeMetadata();                   // ενημέρωση block 0
-                }
+            // Διαβάζουμε metadata από block 0 (offset 0):
+            ByteBuffer headerBuf = ByteBuffer.allocate(24);
+            channel.read(headerBuf, 0L);
+            headerBuf.flip();
+            this.totalRecords = headerBuf.getInt();
+            this.totalBlocks = headerBuf.getInt();
+            if (headerBuf.getInt(20) != FORMAT_VERSION) {
+                channel.close();
+                throw new IOException("DataFile: το " + filename
+                        + " έχει την παλιά μορφή (slots σταθερού μήκους)· πρέπει να ξαναφορτωθεί");
             }
+            readFreeList();
+
+            // Τελευταίο data-block είναι το blockId = totalBlocks - 1· συνεχίζουμε να γράφουμε σε αυτό
+            this.currentBlockId = totalBlocks - 1;
+            int[] header = readBlockHeader(currentBlockId);
+            this.nextSlot = header[0];
+            this.currentFreeEnd = header[1];
+            readRowBase();
+        }
+
+        // Sidecar: άδειο για νέο αρχείο· για υπάρχον, ξαναχτίζεται αν λείπει ή δεν ταιριάζει
+        File cols = new File(filename + COLUMNS_SUFFIX);
+        boolean rebuild = !fresh && (!cols.exists() || cols.length() != (long) usedSlots() * columnRowBytes);
+        this.columns = new RandomAccessFile(cols, "rw").getChannel();
+        if (fresh || rebuild) {
+            columns.truncate(0);
+        }
+        if (rebuild) {
+            rebuildColumns();
         }
     }
 
-    /** @return Πόσα slots (records) χωρούν σε κάθε data-block. */
+    /** @return Πόσα slots (records) χωρούν το πολύ σε κάθε data-block. */
     public int getSlotsPerBlock() {
         return slotsPerBlock;
     }
 
-    /** @return Μέγεθος κάθε εγγραφής (bytes). */
+    /** @return Μέγεθος του σταθερού μέρους κάθε εγγραφής (bytes)· το name προστίθεται σε αυτό. */
     public int getRecordSize() {
         return recordSize;
     }
@@ -123,121 +158,672 @@ public class DataFile {
         return dimension;
     }
 
-    /** @return Το underlying FileChannel (για range/kNN/skyline). */
+    /** @return Το underlying FileChannel. */
     public FileChannel getChannel() {
         return channel;
     }
 
-    /** Ενημερώνει τα πεδία totalRecords, totalBlocks στο block 0. */
+    /** @return Πόσα σβησμένα slots περιμένουν επαναχρησιμοποίηση. */
+    public int getFreeSlotCount() {
+        return freeSlots;
+    }
+
+    /**
+     * Ενημερώνει τα metadata στο block 0:
+     *   offset 0..3: totalRecords, 4..7: totalBlocks,
+     *   8..11: freeHeadBlock, 12..15: freeHeadSlot, 16..19: πλήθος ελεύθερων slots,
+     *   20..23: FORMAT_VERSION.
+     */
     private void writeMetadata() throws IOException {
         ByteBuffer metaBuf = ByteBuffer.allocate(BLOCK_SIZE);
         metaBuf.putInt(totalRecords);
         metaBuf.putInt(totalBlocks);
+        metaBuf.putInt(freeHeadBlock);
+        metaBuf.putInt(freeHeadSlot);
+        metaBuf.putInt(freeSlots);
+        metaBuf.putInt(FORMAT_VERSION);
         metaBuf.flip();
         channel.write(metaBuf, 0L);
     }
 
+    /** Διαβάζει την κεφαλή της free list από το block 0. */
+    private void readFreeList() throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(12);
+        channel.read(buf, 8L);
+        buf.flip();
+        this.freeHeadBlock = buf.getInt();
+        this.freeHeadSlot = buf.getInt();
+        this.freeSlots = buf.getInt();
+    }
+
     /**
-     * Εισαγωγή ενός νέου record στο αρχείο.
-     * Επιστρέφει RecordPointer (blockId ≥ 1, slotId).
+     * @return { πλήθος slots, freeEnd } του block· ένα block που δεν έχει γραφτεί ακόμη
+     *         είναι άδειο (0 slots, freeEnd = BLOCK_SIZE).
      */
-    public RecordPointer insertRecord(Record rec) throws IOException {
-        long blockOffset = (long) currentBlockId * BLOCK_SIZE;
-        // Αν το currentBlockId δεν υπάρχει ακόμη στο αρχείο, το δημιουργούμε
-        if (blockOffset + BLOCK_SIZE > channel.size()) {
-            // Νέο data-block: γράφουμε header live=0 στο ξεκίνημά του
-            ByteBuffer liveBuf = ByteBuffer.allocate(4);
-            liveBuf.putInt(0).flip();
-            channel.write(liveBuf, blockOffset);
+    private int[] readBlockHeader(int blockId) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(BLOCK_HEADER);
+        channel.read(buf, (long) blockId * BLOCK_SIZE);
+        int slots = buf.getInt(0);
+        int freeEnd = buf.getInt(4);
+        return new int[]{ slots, freeEnd == 0 ? BLOCK_SIZE : freeEnd };
+    }
+
+    private void writeBlockHeader(int blockId, int slots, int freeEnd) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(BLOCK_HEADER);
+        buf.putInt(slots).putInt(freeEnd).flip();
+        channel.write(buf, (long) blockId * BLOCK_SIZE);
+    }
+
+    /** Γράφει τη θέση καταλόγου του rp: offset και μήκος του record μέσα στο block. */
+    private void writeDirEntry(RecordPointer rp, int offset, int length) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(DIR_ENTRY);
+        buf.putChar((char) offset).putChar((char) length).flip();
+        channel.write(buf, dirPosition(rp));
+    }
+
+    /** @return Η θέση της θέσης καταλόγου του rp στο αρχείο. */
+    private long dirPosition(RecordPointer rp) {
+        return (long) rp.getBlockId() * BLOCK_SIZE + BLOCK_HEADER + (long) rp.getSlotId() * DIR_ENTRY;
+    }
+
+    /** @return Πόσα slots έχουν γραφτεί ποτέ (έγκυρα ή σβησμένα): όλα τα blocks πριν το τρέχον, συν nextSlot. */
+    private int usedSlots() {
+        return rowBase[currentBlockId] + nextSlot;
+    }
+
+    /** @return Πόσα slots έχει το data-block blockId (≤ currentBlockId). */
+    private int slotCount(int blockId) {
+        return (blockId == currentBlockId) ? nextSlot : rowBase[blockId + 1] - rowBase[blockId];
+    }
+
+    /** @return Η θέση της γραμμής του slot rp στο sidecar (το slot πρέπει να υπάρχει). */
+    private long columnPosition(RecordPointer rp) {
+        return ((long) rowBase[rp.getBlockId()] + rp.getSlotId()) * columnRowBytes;
+    }
+
+    /** Καταγράφει ότι το data-block blockId (νέο) ξεκινάει στη γραμμή first του sidecar. */
+    private void setRowBase(int blockId, int first) {
+        if (blockId >= rowBase.length) {
+            rowBase = Arrays.copyOf(rowBase, Math.max(blockId + 1, 2 * rowBase.length));
+        }
+        rowBase[blockId] = first;
+    }
+
+    /** Υπολογίζει το rowBase όλων των data-blocks από τα πλήθη slots στα headers τους. */
+    private void readRowBase() throws IOException {
+        ByteBuffer count = ByteBuffer.allocate(4);
+        int first = 0;
+        for (int blockId = 1; blockId <= currentBlockId; blockId++) {
+            setRowBase(blockId, first);
+            if (blockId == currentBlockId) {
+                break;
+            }
+            count.clear();
+            channel.read(count, (long) blockId * BLOCK_SIZE);
+            first += Math.max(0, Math.min(count.getInt(0), slotsPerBlock));
+        }
+    }
+
+    /** Γράφει id και coords του slot rp στη γραμμή του στο sidecar. */
+    private void writeColumns(RecordPointer rp, long id, double[] coords) throws IOException {
+        ByteBuffer row = ByteBuffer.allocate(columnRowBytes);
+        row.putLong(id);
+        for (int i = 0; i < dimension; i++) {
+            row.putDouble(coords[i]);
+        }
+        row.flip();
+        long pos = columnPosition(rp);
+        while (row.hasRemaining()) {
+            columns.write(row, pos + row.position());
+        }
+    }
+
+    /**
+     * Ξαναγράφει το sidecar από τα slots του κυρίως αρχείου (ένα block ανά ανάγνωση),
+     * π.χ. για αρχεία που γράφτηκαν πριν υπάρξει το sidecar ή με τη διάταξη σταθερών
+     * slotsPerBlock γραμμών ανά block, που δίνει άλλο μήκος αρχείου.
+     */
+    private void rebuildColumns() throws IOException {
+        ByteBuffer block = ByteBuffer.allocate(BLOCK_SIZE);
+        ByteBuffer rows = ByteBuffer.allocate(slotsPerBlock * columnRowBytes);
+        for (int blockId = 1; blockId <= currentBlockId; blockId++) {
+            block.clear();
+            long blockOffset = (long) blockId * BLOCK_SIZE;
+            while (block.hasRemaining()) {
+                if (channel.read(block, blockOffset + block.position()) < 0) break;
+            }
+            int slots = slotCount(blockId);
+            rows.clear();
+            for (int s = 0; s < slots; s++) {
+                int offset = block.getChar(BLOCK_HEADER + s * DIR_ENTRY);
+                if (offset == 0) {
+                    rows.position(rows.position() + columnRowBytes); // μηδενική γραμμή
+                    continue;
+                }
+                rows.putLong(block.getLong(offset));
+                for (int i = 0; i < dimension; i++) {
+                    rows.putDouble(block.getDouble(offset + 8 + 8 * i));
+                }
+            }
+            rows.flip();
+            long pos = (long) rowBase[blockId] * columnRowBytes;
+            while (rows.hasRemaining()) {
+                columns.write(rows, pos + rows.position());
+            }
         }
+    }
 
-        // Θέση του current record: offset = blockOffset + 4 (bytes header) + slotId * recordSize
-        long slotPos = blockOffset + 4L + (long) nextSlot * recordSize;
+    /**
+     * @return Η θέση του record του slot rp στο αρχείο.
+     * @throws IOException αν το slot δεν έχει γραφτεί.
+     */
+    private long recordPosition(RecordPointer rp) throws IOException {
+        return (long) rp.getBlockId() * BLOCK_SIZE + readDirEntry(rp)[0];
+    }
+
+    /**
+     * @return { offset, μήκος } του record του slot rp μέσα στο block του.
+     * @throws IOException αν το slot δεν έχει γραφτεί.
+     */
+    private int[] readDirEntry(RecordPointer rp) throws IOException {
+        if (rp.getBlockId() < 1 || rp.getSlotId() < 0 || rp.getSlotId() >= slotsPerBlock) {
+            throw new IOException("DataFile: δεν υπάρχει slot " + rp.getBlockId() + ":" + rp.getSlotId());
+        }
+        // Header και κατάλογος μέχρι τη θέση του slot με μία ανάγνωση: πέρα από το πλήθος slots
+        // του block, η «θέση καταλόγου» μπορεί να πέφτει μέσα στα records
+        int entryPos = BLOCK_HEADER + rp.getSlotId() * DIR_ENTRY;
+        ByteBuffer buf = ByteBuffer.allocate(entryPos + DIR_ENTRY);
+        readFully(channel, buf, (long) rp.getBlockId() * BLOCK_SIZE, buf.capacity());
+        int offset = buf.getChar(entryPos);
+        if (rp.getSlotId() >= buf.getInt(0) || offset == 0) {
+            throw new IOException("DataFile: δεν υπάρχει slot " + rp.getBlockId() + ":" + rp.getSlotId());
+        }
+        return new int[]{ offset, buf.getChar(entryPos + 2) };
+    }
 
-        // (α) Γράφουμε id (8 bytes)
+    /** @return Το id που είναι γραμμένο στο record της θέσης recPos (DELETED_ID αν είναι σβησμένο). */
+    private long readId(long recPos) throws IOException {
         ByteBuffer idBuf = ByteBuffer.allocate(8);
-        idBuf.putLong(rec.getId()).flip();
-        channel.write(idBuf, slotPos);
-
-        // (β) Γράφουμε name (256 bytes, UTF-8 padded με μηδενικά)
-        ByteBuffer nameBuf = ByteBuffer.allocate(256);
-        byte[] nameBytes = rec.getName().getBytes(StandardCharsets.UTF_8);
-        int copyLen = Math.min(nameBytes.length, 256);
-        nameBuf.put(nameBytes, 0, copyLen);
-        nameBuf.flip();
-        channel.write(nameBuf, slotPos + 8);
-
-        // (γ) Γράφουμε coords (8×dim bytes)
-        ByteBuffer coordsBuf = ByteBuffer.allocate(8 * dimension);
-        for (double c : rec.getCoords()) {
-            coordsBuf.putDouble(c);
+        channel.read(idBuf, recPos);
+        idBuf.flip();
+        return idBuf.getLong();
+    }
+
+    /** @return Το rec σε μορφή record: id, coords, μήκος name, name (UTF-8). */
+    private ByteBuffer encode(Record rec) {
+        byte[] name = encodeName(rec.getName());
+        ByteBuffer buf = ByteBuffer.allocate(recordSize + name.length);
+        buf.putLong(rec.getId());
+        for (int i = 0; i < dimension; i++) {
+            buf.putDouble(rec.getCoords()[i]);
         }
-        coordsBuf.flip();
-        channel.write(coordsBuf, slotPos + 8 + 256);
+        buf.putChar((char) name.length);
+        buf.put(name);
+        buf.flip();
+        return buf;
+    }
 
-        // Ενημερώνουμε το live count αυτού του block (header)
-        int liveInBlock = nextSlot + 1;
-        ByteBuffer liveBuf = ByteBuffer.allocate(4);
-        liveBuf.putInt(liveInBlock).flip();
-        channel.write(liveBuf, blockOffset);
+    /** @return Το name σε UTF-8, κομμένο στα MAX_NAME_BYTES χωρίς να σπάει χαρακτήρα. */
+    private static byte[] encodeName(String name) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length <= MAX_NAME_BYTES) {
+            return bytes;
+        }
+        int cut = MAX_NAME_BYTES;
+        while (cut > 0 && (bytes[cut] & 0xC0) == 0x80) {
+            cut--; // το bytes[cut] είναι συνέχεια χαρακτήρα που ξεκίνησε πιο πριν
+        }
+        return Arrays.copyOf(bytes, cut);
+    }
 
-        // Αυξάνουμε counters
-        RecordPointer rp = new RecordPointer(currentBlockId, nextSlot);
-        nextSlot++;
-        totalRecords++;
+    /** @return Τα πεδία της projection του record που ξεκινάει στη θέση pos του buf (absolute gets). */
+    private Record decode(ByteBuffer buf, int pos, Projection projection) {
+        long id = buf.getLong(pos);
+        double[] coords = null;
+        if (projection != Projection.ID_NAME) {
+            coords = new double[dimension];
+            for (int i = 0; i < dimension; i++) {
+                coords[i] = buf.getDouble(pos + 8 + 8 * i);
+            }
+        }
+        if (projection == Projection.COORDS) {
+            return new Record(id, null, coords);
+        }
+        int namePos = pos + recordSize;
+        int nameLen = buf.getChar(namePos - 2);
+        byte[] nameBytes = new byte[nameLen];
+        for (int i = 0; i < nameLen; i++) {
+            nameBytes[i] = buf.get(namePos + i);
+        }
+        return new Record(id, new String(nameBytes, StandardCharsets.UTF_8), coords);
+    }
 
-        // Αν γεμίσαμε το block, ανοίγουμε νέο data-block στο επόμενο insert
-        if (nextSlot >= slotsPerBlock) {
+    private void writeAt(ByteBuffer buf, long pos) throws IOException {
+        while (buf.hasRemaining()) {
+            channel.write(buf, pos + buf.position());
+        }
+    }
+
+    /**
+     * Εισαγωγή ενός νέου record στο αρχείο.
+     * Επιστρέφει RecordPointer (blockId ≥ 1, slotId).
+     */
+    public RecordPointer insertRecord(Record rec) throws IOException {
+        ByteBuffer enc = encode(rec);
+        if (freeHeadBlock > 0) {
+            RecordPointer rp = reuseFreeSlot(rec, enc);
+            if (rp != null) {
+                return rp;
+            }
+        }
+        int length = enc.remaining();
+        // Χωράει στο τρέχον block μαζί με τη νέα θέση καταλόγου; αλλιώς ανοίγουμε νέο data-block
+        if (nextSlot == slotsPerBlock
+                || currentFreeEnd - length < BLOCK_HEADER + (nextSlot + 1) * DIR_ENTRY) {
+            setRowBase(totalBlocks, usedSlots()); // οι γραμμές του νέου block ακολουθούν του τρέχοντος
             currentBlockId = totalBlocks; // νέο blockId
             totalBlocks++;
             nextSlot = 0;
-            writeMetadata();             // ενημέρωση metadata (block 0)
+            currentFreeEnd = BLOCK_SIZE;
+            writeMetadata();              // ενημέρωση metadata (block 0)
         }
 
+        // Το record μπαίνει ακριβώς πριν από τα προηγούμενα records του block
+        RecordPointer rp = new RecordPointer(currentBlockId, nextSlot);
+        currentFreeEnd -= length;
+        writeAt(enc, (long) currentBlockId * BLOCK_SIZE + currentFreeEnd);
+        writeDirEntry(rp, currentFreeEnd, length);
+        nextSlot++;
+        writeBlockHeader(currentBlockId, nextSlot, currentFreeEnd);
+        writeColumns(rp, rec.getId(), rec.getCoords());
+        totalRecords++;
         return rp;
     }
 
+    /**
+     * Γράφει το rec στο πρώτο από τα FREE_LIST_PROBES πρώτα slots της free list όπου χωράει
+     * και το αφαιρεί από τη λίστα. Το record μπαίνει στη θέση του tombstone αν χωράει εκεί,
+     * αλλιώς στον ελεύθερο χώρο του ίδιου block.
+     *
+     * @return null αν δεν χωράει σε κανένα από αυτά (η λίστα μένει ως έχει).
+     */
+    private RecordPointer reuseFreeSlot(Record rec, ByteBuffer enc) throws IOException {
+        int length = enc.remaining();
+        long prevTomb = -1L;            // θέση του προηγούμενου tombstone της λίστας (-1: η κεφαλή)
+        int blockId = freeHeadBlock;
+        int slotId = freeHeadSlot;
+        for (int probe = 0; probe < FREE_LIST_PROBES && blockId > 0; probe++) {
+            RecordPointer rp = new RecordPointer(blockId, slotId);
+            long blockOffset = (long) blockId * BLOCK_SIZE;
+            int[] entry = readDirEntry(rp);
+            ByteBuffer next = ByteBuffer.allocate(8);
+            readFully(channel, next, blockOffset + entry[0] + 8, 8);
+            next.flip();
+
+            // Στη θέση του tombstone ο κατάλογος κρατάει το αρχικό μήκος, ώστε να χωράει ξανά ίσο record
+            int offset = entry[0];
+            int[] header = null;
+            if (length > entry[1]) {
+                // Νέος χώρος από το freeEnd του block· ο χώρος του tombstone μένει αχρησιμοποίητος
+                header = (blockId == currentBlockId)
+                        ? new int[]{ nextSlot, currentFreeEnd } : readBlockHeader(blockId);
+                offset = header[1] - length;
+            }
+            if (header != null && offset < BLOCK_HEADER + header[0] * DIR_ENTRY) {
+                prevTomb = blockOffset + entry[0];
+                blockId = next.getInt(0);
+                slotId = next.getInt(4);
+                continue;
+            }
+
+            // Το slot βγαίνει από τη λίστα: ο προηγούμενος κόμβος δείχνει πλέον στον επόμενο
+            if (prevTomb < 0) {
+                freeHeadBlock = next.getInt(0);
+                freeHeadSlot = next.getInt(4);
+            } else {
+                writeAt(next, prevTomb + 8);
+            }
+            freeSlots--;
+            if (header != null) {
+                writeBlockHeader(blockId, header[0], offset);
+                if (blockId == currentBlockId) {
+                    currentFreeEnd = offset;
+                }
+            }
+
+            writeAt(enc, blockOffset + offset);
+            if (offset != entry[0]) {
+                writeDirEntry(rp, offset, length);
+            }
+            writeColumns(rp, rec.getId(), rec.getCoords());
+            totalRecords++;
+            writeMetadata();
+            return rp;
+        }
+        return null;
+    }
+
+    /**
+     * Σβήνει το record στο rp: το record γίνεται tombstone (id = DELETED_ID), που το scan
+     * προσπερνάει, και το slot μπαίνει στην κεφαλή της free list για το επόμενο insertRecord.
+     *
+     * @return false αν το slot ήταν ήδη σβησμένο.
+     */
+    public boolean deleteRecord(RecordPointer rp) throws IOException {
+        long recPos = recordPosition(rp);
+        if (readId(recPos) <= 0L) {
+            return false;
+        }
+        ByteBuffer tomb = ByteBuffer.allocate(16);
+        tomb.putLong(DELETED_ID);
+        tomb.putInt(freeHeadBlock);
+        tomb.putInt(freeHeadSlot);
+        tomb.flip();
+        writeAt(tomb, recPos);
+        ByteBuffer tombRow = ByteBuffer.allocate(8);
+        tombRow.putLong(DELETED_ID).flip();
+        columns.write(tombRow, columnPosition(rp));
+
+        freeHeadBlock = rp.getBlockId();
+        freeHeadSlot = rp.getSlotId();
+        freeSlots++;
+        totalRecords--;
+        writeMetadata();
+        return true;
+    }
+
+    /**
+     * Αλλάζει επί τόπου τις συντεταγμένες του record στο rp (id και name μένουν ίδια).
+     *
+     * @throws IOException αν το slot είναι σβησμένο.
+     */
+    public void updateCoords(RecordPointer rp, double[] coords) throws IOException {
+        long recPos = recordPosition(rp);
+        if (readId(recPos) <= 0L) {
+            throw new IOException("updateCoords: το slot " + rp.getBlockId() + ":" + rp.getSlotId()
+                    + " είναι σβησμένο");
+        }
+        ByteBuffer coordsBuf = ByteBuffer.allocate(8 * dimension);
+        for (int i = 0; i < dimension; i++) {
+            coordsBuf.putDouble(coords[i]);
+        }
+        coordsBuf.flip();
+        writeAt(coordsBuf, recPos + 8);
+        coordsBuf.rewind();
+        columns.write(coordsBuf, columnPosition(rp) + 8);
+    }
+
     /**
      * Διαβάζει ένα Record με βάση το RecordPointer (blockId, slotId).
      * Επιστρέφει το αντικείμενο Record.
+     *
+     * @throws IOException αν το slot δεν έχει γραφτεί ή είναι σβησμένο.
      */
     public Record readRecord(RecordPointer rp) throws IOException {
-        long blockOffset = (long) rp.getBlockId() * BLOCK_SIZE;
+        // Από το mapping: όλο το block είναι στο ίδιο segment, κατάλογος και record χωρίς αντιγραφή
+        if (mapped != null) {
+            long blockOffset = (long) rp.getBlockId() * BLOCK_SIZE;
+            ByteBuffer block = mapped.segmentFor(blockOffset, BLOCK_SIZE);
+            if (block != null && rp.getSlotId() >= 0 && rp.getSlotId() < slotsPerBlock) {
+                int base = mapped.offsetOf(blockOffset);
+                int offset = block.getChar(base + BLOCK_HEADER + rp.getSlotId() * DIR_ENTRY);
+                if (rp.getSlotId() < block.getInt(base) && offset != 0) {
+                    requireLive(block.getLong(base + offset), rp);
+                    return decode(block, base + offset, Projection.ALL);
+                }
+            }
+        }
 
-        // (α) Διαβάζουμε id (8 bytes)
-        long slotPos = blockOffset + 4L + (long) rp.getSlotId() * recordSize;
-        ByteBuffer idBuf = ByteBuffer.allocate(8);
-        channel.read(idBuf, slotPos);
-        idBuf.flip();
-        long id = idBuf.getLong();
-
-        // (β) Διαβάζουμε name (256 bytes)
-        ByteBuffer nameBuf = ByteBuffer.allocate(256);
-        channel.read(nameBuf, slotPos + 8);
-        nameBuf.flip();
-        int strLen = 0;
-        while (strLen < 256 && nameBuf.get(strLen) != 0) {
-            strLen++;
-        }
-        byte[] nameBytes = new byte[strLen];
-        nameBuf.position(0);
-        nameBuf.get(nameBytes, 0, strLen);
-        String name = new String(nameBytes, StandardCharsets.UTF_8);
-
-        // (γ) Διαβάζουμε coords (8×dim bytes)
-        ByteBuffer coordsBuf = ByteBuffer.allocate(8 * dimension);
-        channel.read(coordsBuf, slotPos + 8 + 256);
-        coordsBuf.flip();
-        double[] coords = new double[dimension];
-        for (int i = 0; i < dimension; i++) {
-            coords[i] = coordsBuf.getDouble();
+        // Από το κανάλι: θέση καταλόγου και μετά ολόκληρο το record με μία ανάγνωση
+        int[] entry = readDirEntry(rp);
+        ByteBuffer rec = ByteBuffer.allocate(entry[1]);
+        long recPos = (long) rp.getBlockId() * BLOCK_SIZE + entry[0];
+        while (rec.hasRemaining()) {
+            if (channel.read(rec, recPos + rec.position()) < 0) {
+                throw new IOException("DataFile: το record " + rp.getBlockId() + ":" + rp.getSlotId()
+                        + " είναι κομμένο");
+            }
+        }
+        requireLive(rec.getLong(0), rp);
+        return decode(rec, 0, Projection.ALL);
+    }
+
+    /** @throws IOException αν το id που διαβάστηκε για το rp είναι tombstone (DELETED_ID). */
+    private static void requireLive(long id, RecordPointer rp) throws IOException {
+        if (id == DELETED_ID) {
+            throw new IOException("DataFile: το slot " + rp.getBlockId() + ":" + rp.getSlotId()
+                    + " είναι σβησμένο");
+        }
+    }
+
+    /** Όπως το readRecords(rps, Projection.ALL). */
+    public List<Record> readRecords(Collection<RecordPointer> rps) throws IOException {
+        return readRecords(rps, Projection.ALL);
+    }
+
+    /**
+     * Ανάκτηση πολλών records (π.χ. των αποτελεσμάτων ενός rangeQuery) με ταξινομημένο I/O:
+     * οι pointers ομαδοποιούνται κατά blockId και κάθε block διαβάζεται μία φορά, με αύξουσα
+     * σειρά· διαδοχικά blocks διαβάζονται μαζί (έως DataScan.DEFAULT_BLOCKS_PER_READ ανά
+     * ανάγνωση). Από κάθε block αποκωδικοποιούνται όλα τα slots του που ζητήθηκαν.
+     * Με Projection.COORDS διαβάζονται μόνο οι αντίστοιχες γραμμές του sidecar.
+     *
+     * @return Ένα Record για κάθε pointer (και για τους διπλότυπους), με τη σειρά του rps.
+     * @throws IOException αν κάποιο slot δεν έχει γραφτεί ή είναι σβησμένο.
+     */
+    public List<Record> readRecords(Collection<RecordPointer> rps, Projection projection) throws IOException {
+        RecordPointer[] ptrs = rps.toArray(new RecordPointer[0]);
+        int n = ptrs.length;
+        // Ταξινόμηση κατά blockId· στα κάτω 32 bits η θέση του pointer στο rps
+        long[] order = new long[n];
+        for (int i = 0; i < n; i++) {
+            RecordPointer rp = ptrs[i];
+            if (rp.getBlockId() < 1 || rp.getBlockId() > currentBlockId
+                    || rp.getSlotId() < 0 || rp.getSlotId() >= slotsPerBlock) {
+                throw new IOException("DataFile: δεν υπάρχει slot " + rp.getBlockId() + ":" + rp.getSlotId());
+            }
+            order[i] = (long) rp.getBlockId() << 32 | i;
+        }
+        Arrays.sort(order);
+
+        Record[] out = new Record[n];
+        int maxBlocks = DataScan.DEFAULT_BLOCKS_PER_READ;
+        ByteBuffer buf = null; // για αναγνώσεις μέσω καναλιού (από τους buffers των DataScan), μόλις χρειαστεί
+        try {
+            int i = 0;
+            while (i < n) {
+                // Ομάδα: οι pointers μιας σειράς διαδοχικών blocks first..last
+                int first = (int) (order[i] >>> 32);
+                int last = first;
+                int j = i + 1;
+                while (j < n) {
+                    int b = (int) (order[j] >>> 32);
+                    if (b > last + 1 || b - first >= maxBlocks) break;
+                    last = b;
+                    j++;
+                }
+                if (projection == Projection.COORDS) {
+                    buf = readColumnGroup(ptrs, order, i, j, out, buf);
+                } else {
+                    buf = readBlockGroup(ptrs, order, i, j, first, last, projection, out, buf);
+                }
+                i = j;
+            }
+        } finally {
+            if (buf != null) {
+                returnScanBuffer(buf);
+            }
         }
+        return new ArrayList<>(Arrays.asList(out));
+    }
+
+    /**
+     * Διαβάζει τα blocks first..last (από το mapping ή με μία ανάγνωση στον buf) και
+     * αποκωδικοποιεί τους pointers order[from..to).
+     *
+     * @return Ο buffer των αναγνώσεων (ίδιος, ή νέος αν δεν υπήρχε).
+     */
+    private ByteBuffer readBlockGroup(RecordPointer[] ptrs, long[] order, int from, int to, int first, int last,
+                                      Projection projection, Record[] out, ByteBuffer buf) throws IOException {
+        long pos = (long) first * BLOCK_SIZE;
+        int bytes = (last - first + 1) * BLOCK_SIZE;
+        ByteBuffer src = (mapped != null) ? mapped.segmentFor(pos, bytes) : null;
+        int base;
+        if (src != null) {
+            base = mapped.offsetOf(pos);
+        } else {
+            if (buf == null) {
+                buf = takeScanBuffer(DataScan.DEFAULT_BLOCKS_PER_READ * BLOCK_SIZE);
+            }
+            readFully(channel, buf, pos, bytes);
+            src = buf;
+            base = 0;
+        }
+        for (int k = from; k < to; k++) {
+            int idx = (int) order[k];
+            RecordPointer rp = ptrs[idx];
+            int blockBase = base + (rp.getBlockId() - first) * BLOCK_SIZE;
+            int offset = src.getChar(blockBase + BLOCK_HEADER + rp.getSlotId() * DIR_ENTRY);
+            if (rp.getSlotId() >= src.getInt(blockBase) || offset == 0) {
+                throw new IOException("DataFile: δεν υπάρχει slot " + rp.getBlockId() + ":" + rp.getSlotId());
+            }
+            requireLive(src.getLong(blockBase + offset), rp);
+            out[idx] = decode(src, blockBase + offset, projection);
+        }
+        return buf;
+    }
+
+    /**
+     * Όπως το readBlockGroup, για Projection.COORDS: διαβάζει μόνο τις γραμμές του sidecar
+     * από την πρώτη ως την τελευταία που ζητήθηκε.
+     */
+    private ByteBuffer readColumnGroup(RecordPointer[] ptrs, long[] order, int from, int to,
+                                       Record[] out, ByteBuffer buf) throws IOException {
+        long minRow = Long.MAX_VALUE, maxRow = -1;
+        for (int k = from; k < to; k++) {
+            RecordPointer rp = ptrs[(int) order[k]];
+            // Οι γραμμές είναι πυκνές: ένα slot πέρα από τα slots του block θα έπεφτε στο επόμενο
+            if (rp.getSlotId() >= slotCount(rp.getBlockId())) {
+                throw new IOException("DataFile: δεν υπάρχει slot " + rp.getBlockId() + ":" + rp.getSlotId());
+            }
+            long row = columnPosition(rp) / columnRowBytes;
+            minRow = Math.min(minRow, row);
+            maxRow = Math.max(maxRow, row);
+        }
+        long pos = minRow * columnRowBytes;
+        int bytes = (int) (maxRow - minRow + 1) * columnRowBytes;
+        ByteBuffer src = (mappedColumns != null) ? mappedColumns.segmentFor(pos, bytes) : null;
+        int base;
+        if (src != null) {
+            base = mappedColumns.offsetOf(pos);
+        } else {
+            if (buf == null) {
+                buf = takeScanBuffer(DataScan.DEFAULT_BLOCKS_PER_READ * BLOCK_SIZE);
+            }
+            readFully(columns, buf, pos, bytes);
+            src = buf;
+            base = 0;
+        }
+        for (int k = from; k < to; k++) {
+            int idx = (int) order[k];
+            RecordPointer rp = ptrs[idx];
+            int rowPos = base + (int) (columnPosition(rp) - pos);
+            long id = src.getLong(rowPos);
+            if (id == 0L) {
+                // μηδενική γραμμή: το slot δεν γράφτηκε ποτέ
+                throw new IOException("DataFile: δεν υπάρχει slot " + rp.getBlockId() + ":" + rp.getSlotId());
+            }
+            requireLive(id, rp);
+            double[] coords = new double[dimension];
+            for (int d = 0; d < dimension; d++) {
+                coords[d] = src.getDouble(rowPos + 8 + 8 * d);
+            }
+            out[idx] = new Record(id, null, coords);
+        }
+        return buf;
+    }
+
+    /** Διαβάζει bytes bytes από τη θέση pos στην αρχή του buf· πέρα από το τέλος του αρχείου μένουν μηδενικά. */
+    private static void readFully(FileChannel ch, ByteBuffer buf, long pos, int bytes) throws IOException {
+        buf.clear();
+        buf.limit(bytes);
+        while (buf.hasRemaining()) {
+            if (ch.read(buf, pos + buf.position()) < 0) break;
+        }
+        while (buf.hasRemaining()) {
+            buf.put((byte) 0);
+        }
+    }
+
+    /**
+     * Σειριακή σάρωση όλων των έγκυρων records μέσω DataScan (πάνω στο sidecar, με prefetch).
+     * Για σαρώσεις χωρίς αντικείμενα ανά record, βλ. openScan().
+     */
+    public void scan(RecordVisitor visitor) throws IOException {
+        try (DataScan s = openScan(DataScan.DEFAULT_BLOCKS_PER_READ, true)) {
+            while (s.next()) {
+                double[] coords = new double[dimension];
+                s.coords(coords);
+                visitor.visit(s.id(), coords, s.pointer());
+            }
+        }
+    }
+
+    /** Block-at-a-time σάρωση με τις προεπιλογές (DEFAULT_BLOCKS_PER_READ, χωρίς prefetch). */
+    public DataScan openScan() {
+        return openScan(DataScan.DEFAULT_BLOCKS_PER_READ, false);
+    }
+
+    /**
+     * Ανοίγει σειριακή σάρωση των records (βλ. DataScan).
+     *
+     * @param blocksPerRead Πόσα bytes διαβάζονται με κάθε ανάγνωση, σε μονάδες BLOCK_SIZE.
+     * @param prefetch      true για ανάγνωση της επόμενης ομάδας σε background thread.
+     */
+    public DataScan openScan(int blocksPerRead, boolean prefetch) {
+        // Αντίγραφο του rowBase ως το τρέχον block, με φρουρό το πλήθος των γραμμών
+        int[] bases = Arrays.copyOf(rowBase, currentBlockId + 2);
+        bases[currentBlockId + 1] = usedSlots();
+        return new DataScan(this, columns, mappedColumns, columnRowBytes, bases, usedSlots(),
+                blocksPerRead, prefetch);
+    }
+
+    /** Direct buffer capacity bytes για ένα DataScan (από όσους επέστρεψαν προηγούμενες σαρώσεις). */
+    synchronized ByteBuffer takeScanBuffer(int capacity) {
+        for (ByteBuffer b : scanBuffers) {
+            if (b.capacity() == capacity) {
+                scanBuffers.remove(b);
+                return b;
+            }
+        }
+        return ByteBuffer.allocateDirect(capacity);
+    }
+
+    /** Ο buffer ενός DataScan που έκλεισε κρατιέται για την επόμενη σάρωση (έως δύο). */
+    synchronized void returnScanBuffer(ByteBuffer b) {
+        if (scanBuffers.size() < 2) {
+            scanBuffers.push(b);
+        }
+    }
+
+    /**
+     * Ενεργοποιεί/απενεργοποιεί το memory-mapped read path για readRecord() και scan().
+     * Οι εγγραφές γίνονται πάντα μέσω του FileChannel.
+     */
+    public void setMemoryMapped(boolean enabled) {
+        this.mapped = enabled ? new MappedRegion(channel, MappedRegion.DEFAULT_SEGMENT_SIZE) : null;
+        this.mappedColumns = enabled ? new MappedRegion(columns, MappedRegion.DEFAULT_SEGMENT_SIZE) : null;
+    }
 
-        return new Record(id, name, coords);
+    public boolean isMemoryMapped() {
+        return mapped != null;
     }
 
-    /** Κλείνει το underlying FileChannel. */
+    /** Ενημερώνει τα metadata του block 0 και κλείνει το underlying FileChannel και το sidecar. */
     public void close() throws IOException {
+        if (!channel.isOpen()) return;
+        writeMetadata();
         channel.close();
+        columns.close();
     }
 }
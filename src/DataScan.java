@@ -0,0 +1,262 @@
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Σειριακή σάρωση των έγκυρων records ενός DataFile (DataFile.openScan).
+ *
+ * Η σάρωση διαβάζει το columnar sidecar του DataFile (id και συντεταγμένες, πυκνά, μία
+ * γραμμή ανά slot) και όχι τα slots του κυρίως αρχείου, οπότε δεν περνάει από I/O το πεδίο
+ * name. Οι γραμμές διαβάζονται ανά blocksPerRead·BLOCK_SIZE bytes σε direct buffer με μία
+ * ανάγνωση, και ο cursor διαβάζει id και συντεταγμένες κατευθείαν από τον buffer, χωρίς
+ * αντικείμενα ανά record (το pointer() δημιουργεί RecordPointer μόνο όταν ζητηθεί).
+ * Με prefetch, ένα background thread διαβάζει την επόμενη ομάδα όσο επεξεργάζεται η
+ * τρέχουσα. Αν το DataFile είναι memory-mapped, οι ομάδες που βρίσκονται ολόκληρες στο
+ * mapping διαβάζονται από εκεί, χωρίς αντιγραφή.
+ *
+ * Η σάρωση βλέπει τα slots που υπήρχαν όταν άνοιξε. Δεν είναι thread-safe.
+ *
+ * <pre>
+ * try (DataScan scan = df.openScan()) {
+ *     while (scan.next()) {
+ *         double x = scan.coord(0);
+ *         ...
+ *     }
+ * }
+ * </pre>
+ */
+public final class DataScan implements AutoCloseable {
+    public static final int DEFAULT_BLOCKS_PER_READ = 8;   // 256 KB ανά ανάγνωση
+
+    private final DataFile file;
+    private final FileChannel columns;
+    private final MappedRegion mapped;
+    private final int rowBytes;
+    private final int[] rowBase;      // rowBase[b]: πρώτη γραμμή του block b· στο τέλος φρουρός = totalRows
+    private final long totalRows;
+    private final int rowsPerRead;
+    private final ExecutorService prefetcher;              // null χωρίς prefetch
+
+    private ByteBuffer current;       // η ομάδα που διαβάζεται: front ή segment του mapping
+    private ByteBuffer front;         // δικός μας buffer της τρέχουσας ομάδας
+    private ByteBuffer back;          // δεύτερος buffer, όπου γράφει το prefetch
+    private Future<Integer> pending;  // ανάγνωση της επόμενης ομάδας στο back
+    private long pendingFirst;        // πρώτη γραμμή της pending ομάδας
+    private long nextToRead;          // πρώτη γραμμή που δεν έχει ζητηθεί ακόμη
+
+    private long batchFirst;          // πρώτη γραμμή της τρέχουσας ομάδας
+    private int batchBase;            // θέση της batchFirst μέσα στο current
+    private int batchRows;
+    private int rowInBatch = -1;
+    private int rowPos;
+    private long id;
+    private int block = 1;            // block της τελευταίας γραμμής που εντοπίστηκε (οι γραμμές αυξάνουν)
+    private boolean closed;
+
+    /**
+     * @param columns       Το κανάλι του sidecar (γραμμή r στη θέση r·rowBytes).
+     * @param mapped        Mapping του sidecar, ή null.
+     * @param rowBase       Η πρώτη γραμμή κάθε data-block, με φρουρό μετά το τελευταίο.
+     * @param totalRows     Πόσες γραμμές (slots) σαρώνονται.
+     * @param blocksPerRead Bytes ανά ανάγνωση, σε μονάδες BLOCK_SIZE.
+     */
+    DataScan(DataFile file, FileChannel columns, MappedRegion mapped, int rowBytes, int[] rowBase,
+             long totalRows, int blocksPerRead, boolean prefetch) {
+        if (blocksPerRead < 1) {
+            throw new IllegalArgumentException("DataScan: blocksPerRead πρέπει να είναι ≥ 1");
+        }
+        this.file = file;
+        this.columns = columns;
+        this.mapped = mapped;
+        this.rowBytes = rowBytes;
+        this.rowBase = rowBase;
+        this.totalRows = totalRows;
+        int capacity = blocksPerRead * DataFile.BLOCK_SIZE;
+        this.rowsPerRead = Math.max(1, capacity / rowBytes);
+        this.front = file.takeScanBuffer(Math.max(capacity, rowBytes));
+        // Με mapping οι αναγνώσεις δεν περνούν από buffer· prefetch μόνο για πάνω από μία ομάδα
+        if (prefetch && mapped == null && totalRows > rowsPerRead) {
+            this.back = file.takeScanBuffer(front.capacity());
+            this.prefetcher = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "DataScan-prefetch");
+                t.setDaemon(true);
+                return t;
+            });
+            schedule();
+        } else {
+            this.prefetcher = null;
+        }
+    }
+
+    /**
+     * Προχωράει στο επόμενο έγκυρο record (τα σβησμένα και τα άδεια slots προσπερνιούνται).
+     *
+     * @return false όταν τελειώσουν τα records.
+     */
+    public boolean next() throws IOException {
+        while (true) {
+            while (++rowInBatch < batchRows) {
+                rowPos = batchBase + rowInBatch * rowBytes;
+                id = current.getLong(rowPos);
+                if (id > 0L) {
+                    return true;
+                }
+            }
+            if (closed || !nextBatch()) {
+                close();
+                return false;
+            }
+            rowInBatch = -1;
+        }
+    }
+
+    /** @return Το id του τρέχοντος record. */
+    public long id() {
+        return id;
+    }
+
+    /** @return Η συντεταγμένη d του τρέχοντος record. */
+    public double coord(int d) {
+        return current.getDouble(rowPos + 8 + 8 * d);
+    }
+
+    /** Αντιγράφει τις συντεταγμένες του τρέχοντος record στο out (μήκος = διάσταση). */
+    public void coords(double[] out) {
+        for (int d = 0; d < out.length; d++) {
+            out[d] = current.getDouble(rowPos + 8 + 8 * d);
+        }
+    }
+
+    public int blockId() {
+        return blockOf(batchFirst + rowInBatch);
+    }
+
+    public int slotId() {
+        long row = batchFirst + rowInBatch;
+        return (int) (row - rowBase[blockOf(row)]);
+    }
+
+    /** Το block της γραμμής row· η σάρωση προχωράει μόνο μπροστά, οπότε αρκεί να συνεχίσει από το block. */
+    private int blockOf(long row) {
+        while (rowBase[block + 1] <= row) {
+            block++;
+        }
+        return block;
+    }
+
+    /** @return Νέο RecordPointer για το τρέχον record. */
+    public RecordPointer pointer() {
+        return new RecordPointer(blockId(), slotId());
+    }
+
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        batchRows = 0;
+        current = null;
+        if (prefetcher != null) {
+            if (pending != null) {
+                try {
+                    pending.get(); // το back δεν επιστρέφεται όσο γράφει σε αυτό το prefetch
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    back = null;
+                } catch (ExecutionException ignored) {
+                    // η σάρωση έκλεισε· το σφάλμα της ανάγνωσης δεν ενδιαφέρει πια
+                }
+                pending = null;
+            }
+            prefetcher.shutdown();
+        }
+        file.returnScanBuffer(front);
+        front = null;
+        if (back != null) {
+            file.returnScanBuffer(back);
+            back = null;
+        }
+    }
+
+    /** Φέρνει στο current την επόμενη ομάδα γραμμών. */
+    private boolean nextBatch() throws IOException {
+        if (prefetcher != null) {
+            if (pending == null) {
+                return false;
+            }
+            long first = pendingFirst;
+            int bytes = await();
+            ByteBuffer filled = back;
+            back = front;
+            front = filled;
+            schedule();
+            return setBatch(front, first, 0, bytes);
+        }
+        if (nextToRead >= totalRows) {
+            return false;
+        }
+        long first = nextToRead;
+        int count = (int) Math.min(rowsPerRead, totalRows - first);
+        nextToRead += count;
+        long offset = first * rowBytes;
+        ByteBuffer segment = (mapped != null) ? mapped.segmentFor(offset, count * rowBytes) : null;
+        if (segment != null) {
+            return setBatch(segment, first, mapped.offsetOf(offset), count * rowBytes);
+        }
+        return setBatch(front, first, 0, read(front, first, count));
+    }
+
+    private boolean setBatch(ByteBuffer buf, long first, int base, int bytes) {
+        current = buf;
+        batchFirst = first;
+        batchBase = base;
+        batchRows = bytes / rowBytes;   // μια μισή γραμμή στο τέλος του αρχείου δεν έχει γραφτεί ακόμη
+        return batchRows > 0;
+    }
+
+    /** Στο background: διαβάζει την επόμενη ομάδα στο back. */
+    private void schedule() {
+        if (nextToRead >= totalRows) {
+            pending = null;
+            return;
+        }
+        ByteBuffer target = back;
+        long first = nextToRead;
+        int count = (int) Math.min(rowsPerRead, totalRows - first);
+        nextToRead += count;
+        pendingFirst = first;
+        pending = prefetcher.submit(() -> read(target, first, count));
+    }
+
+    private int await() throws IOException {
+        try {
+            return pending.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("DataScan: διακοπή κατά το prefetch");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("DataScan: αποτυχία prefetch", cause);
+        } finally {
+            pending = null;
+        }
+    }
+
+    /** Διαβάζει count γραμμές από την first στον buf (μέχρι το τέλος του αρχείου). */
+    private int read(ByteBuffer buf, long first, int count) throws IOException {
+        long offset = first * rowBytes;
+        buf.clear();
+        buf.limit(count * rowBytes);
+        while (buf.hasRemaining()) {
+            if (columns.read(buf, offset + buf.position()) < 0) break;
+        }
+        return buf.position();
+    }
+}
@@ -17,25 +17,31 @@ public class Demo {
     public static void main(String[] args) {
         DataFile df = null;
         IndexFile idx = null;
+        RStarTree tree = null;
         try {
             System.out.println("1) Δημιουργία DataFile, IndexFile και RStarTree...");
             df = new DataFile(DATAFILE_NAME, DIMENSIONS);
             idx = new IndexFile(INDEXFILE_NAME, DIMENSIONS);
-            RStarTree tree = new RStarTree(DIMENSIONS, df, idx);
+            // Μαζική εισαγωγή: force μόνο στο τέλος (flush του OSMParser και tree.close())
+            idx.setDurability(IndexFile.Durability.ON_FLUSH, 0);
+            tree = new RStarTree(DIMENSIONS, df, idx);
 
             // 2) Χρήση OSMParser για απευθείας εισαγωγή κόμβων (nodes) στο DataFile και στο R*-tree.
             System.out.println("\n2) Ανάγνωση map.osm και εισαγωγή στο R*-tree...");
             OSMParser parser = new OSMParser(tree,df);
             parser.parse(OSM_FILENAME);
             System.out.println("   Ολοκληρώθηκε ingestion από OSMParser.");
+            // Τα ερωτήματα που ακολουθούν διαβάζουν μέσω memory mapping
+            df.setMemoryMapped(true);
+            idx.setMemoryMapped(true);
 
             // 3) Παράδειγμα Range Query:
             System.out.println("\n3) Παράδειγμα Range Query:");
             List<RecordPointer> rangeRes = tree.rangeQuery(MIN_COORDS, MAX_COORDS);
             System.out.printf("   Βρέθηκαν %d σημεία εντός ορθογωνίου.%n", rangeRes.size());
-            for (int i = 0; i < Math.min(rangeRes.size(), 5); i++) {
-                RecordPointer rp = rangeRes.get(i);
-                Record rec = df.readRecord(rp);
+            List<Record> rangeRecs = df.readRecords(rangeRes.subList(0, Math.min(rangeRes.size(), 5)));
+            for (int i = 0; i < rangeRecs.size(); i++) {
+                Record rec = rangeRecs.get(i);
                 System.out.printf("     #%d: id=%d, name=\"%s\", coords=(%.6f, %.6f)%n",
                         i + 1, rec.getId(), rec.getName(),
                         rec.getCoords()[0], rec.getCoords()[1]);
@@ -48,9 +54,9 @@ public class Demo {
             System.out.println("\n4) Παράδειγμα k-NN Query:");
             List<RecordPointer> knnRes = tree.kNNQuery(QUERY_PT, K_NEIGHBORS);
             System.out.printf("   %d πλησιέστερα σημεία στο (%.6f, %.6f):%n", K_NEIGHBORS, QUERY_PT[0], QUERY_PT[1]);
-            for (int i = 0; i < knnRes.size(); i++) {
-                RecordPointer rp = knnRes.get(i);
-                Record rec = df.readRecord(rp);
+            List<Record> knnRecs = df.readRecords(knnRes);
+            for (int i = 0; i < knnRecs.size(); i++) {
+                Record rec = knnRecs.get(i);
                 System.out.printf("     #%d: id=%d, name=\"%s\", coords=(%.6f, %.6f)%n",
                         i + 1, rec.getId(), rec.getName(),
                         rec.getCoords()[0], rec.getCoords()[1]);
@@ -60,9 +66,9 @@ public class Demo {
             System.out.println("\n5) Παράδειγμα Skyline Query:");
             List<RecordPointer> skyRes = tree.skylineQuery();
             System.out.printf("   Βρέθηκαν %d σημεία skyline.%n", skyRes.size());
-            for (int i = 0; i < Math.min(skyRes.size(), 10); i++) {
-                RecordPointer rp = skyRes.get(i);
-                Record rec = df.readRecord(rp);
+            List<Record> skyRecs = df.readRecords(skyRes.subList(0, Math.min(skyRes.size(), 10)));
+            for (int i = 0; i < skyRecs.size(); i++) {
+                Record rec = skyRecs.get(i);
                 System.out.printf("     #%d: id=%d, name=\"%s\", coords=(%.6f, %.6f)%n",
                         i + 1, rec.getId(), rec.getName(),
                         rec.getCoords()[0], rec.getCoords()[1]);
@@ -71,17 +77,18 @@ public class Demo {
                 System.out.println("     (εμφανίζονται μόνο τα πρώτα 10)");
             }
 
-            // 6) Κλείσιμο όλων των αρχείων
+            // 6) Κλείσιμο όλων των αρχείων (το δέντρο γράφει πρώτα τους κόμβους του buffer pool)
+            tree.close();
             df.close();
-            idx.close();
             System.out.println("\n== Demo ολοκληρώθηκε ==");
         }
         catch (IOException | ParserConfigurationException | SAXException e) {
             e.printStackTrace();
         } finally {
             try {
+                if (tree != null) tree.close();
+                else if (idx != null) idx.close();
                 if (df != null) df.close();
-                if (idx != null) idx.close();
             } catch (IOException ignored) {}
         }
     }
@@ -10,6 +10,7 @@ public class Entry {
     private MBR mbr;
     private RecordPointer pointer; // leaf-entry (αν non-null)
     private int childPage;         // internal-entry (αν >=0)
+    private int count;             // internal-entry: πλήθος σημείων του υποδέντρου
 
     /**
      * Κατασκευαστής για leaf‐entry.
@@ -28,13 +29,28 @@ public class Entry {
      *
      * @param mbr       Το MBR που καλύπτει ολόκληρο το υποδέντρο του παιδιού.
      * @param childPage Ο αριθμός σελίδας (pageId) του παιδικού Node στον IndexFile.
+     * @param count     Πλήθος σημείων στο υποδέντρο του παιδιού.
      */
-    public Entry(MBR mbr, int childPage) {
+    public Entry(MBR mbr, int childPage, int count) {
         this.mbr = mbr;
         this.childPage = childPage;
+        this.count = count;
         this.pointer = null;
     }
 
+    /** Internal entry που δείχνει στον child (ο οποίος έχει ήδη σελίδα). */
+    public static Entry forChild(Node child) {
+        return new Entry(child.getMBR(), child.getPageId(), child.subtreeCount());
+    }
+
+    /**
+     * Αντίγραφο της εγγραφής (για το Node.View). Τα MBR και RecordPointer δεν αλλάζουν
+     * επιτόπου, οπότε μοιράζονται με το πρωτότυπο.
+     */
+    public Entry copy() {
+        return pointer != null ? new Entry(mbr, pointer) : new Entry(mbr, childPage, count);
+    }
+
     /**
      * Επιστρέφει true αν αυτή η εγγραφή είναι leaf (σήμα σημείου), διαφορετικά false.
      *
@@ -81,9 +97,29 @@ public class Entry {
         return mbr;
     }
 
+    /**
+     * Επιστρέφει το πλήθος των σημείων που καλύπτει η εγγραφή: 1 για leaf entry,
+     * το πλήθος του υποδέντρου για internal. Στα internal entries είναι ενημερωμένο
+     * μετά από κάθε εισαγωγή/διαγραφή μόνο αν το δέντρο έχει TreeConfig.hasAggregateCounts().
+     *
+     * @return Το πλήθος σημείων.
+     */
+    public int getCount() {
+        return pointer != null ? 1 : count;
+    }
+
+    /**
+     * Θέτει το πλήθος σημείων του υποδέντρου (internal entry).
+     *
+     * @param count Το νέο πλήθος.
+     */
+    public void setCount(int count) {
+        this.count = count;
+    }
+
     /**
      * Θέτει το MBR της εγγραφής.
-     * Χρησιμοποιείται κατά την προώθηση (adjustTree) για ενημέρωση του MBR
+     * Χρησιμοποιείται κατά την προώθηση (adjustPath) για ενημέρωση του MBR
      * στη λίστα του γονέα.
      *
      * @param m Το νέο MBR που θέλουμε να αντιστοιχίσουμε.
@@ -0,0 +1,523 @@
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bulk load για σύνολα δεδομένων μεγαλύτερα από τη μνήμη (external-memory Hilbert packing).
+ *
+ *   1) Σάρωση της εισόδου: κάθε (coords, RecordPointer) γράφεται σε ένα spill αρχείο
+ *      και υπολογίζονται τα συνολικά όρια των δεδομένων.
+ *   2) Runs: το spill διαβάζεται σε κομμάτια που χωράνε στο memoryBudget, κάθε κομμάτι
+ *      ταξινομείται κατά κλειδί Hilbert και γράφεται σε προσωρινό αρχείο.
+ *   3) k-way merge των runs (σε περισσότερα περάσματα αν ξεπερνούν το fan-in).
+ *   4) Το ταξινομημένο ρεύμα πακετάρεται σε φύλλα και ταυτόχρονα σε όλα τα ανώτερα
+ *      επίπεδα, με έναν μόνο ανοιχτό κόμβο ανά επίπεδο στη μνήμη. Κάθε κόμβος παίρνει
+ *      σελίδα (πρώτα από τη free list) όταν κλείσει και γράφεται ακριβώς μία φορά.
+ *
+ * Αν η φόρτωση αποτύχει, οι σελίδες που γράφτηκαν επιστρέφουν στη free list και τα records
+ * που πρόσθεσε το load() στο DataFile σβήνονται· το δέντρο μένει όπως ήταν.
+ */
+public class ExternalBulkLoader {
+    public static final long DEFAULT_MEMORY_BUDGET = 64L * 1024 * 1024; // 64 MB
+    private static final int IO_BUFFER_BYTES = 64 * 1024;               // buffer ανά ανοιχτό αρχείο
+
+    private final RStarTree tree;
+    private final int dim;
+    private final long memoryBudget;
+    private final File tempDir;
+    private final double fillFactor;
+
+    // Στατιστικά της τελευταίας φόρτωσης
+    private long itemCount;
+    private int runCount;
+    private int mergePasses;
+    private long peakMemoryBytes;
+    private long tempBytesWritten;
+
+    public ExternalBulkLoader(RStarTree tree) {
+        this(tree, DEFAULT_MEMORY_BUDGET, null, RStarTree.DEFAULT_FILL_FACTOR);
+    }
+
+    /**
+     * @param tree         Το δέντρο που θα φορτωθεί (η τρέχουσα ρίζα του αντικαθίσταται).
+     * @param memoryBudget Ανώτατο όριο μνήμης (bytes) για τα buffers ταξινόμησης και merge.
+     * @param tempDir      Κατάλογος για τα προσωρινά αρχεία (null = java.io.tmpdir).
+     * @param fillFactor   Ποσοστό του M που γεμίζει κάθε κόμβος, στο (0, 1]· ποτέ κάτω από m.
+     */
+    public ExternalBulkLoader(RStarTree tree, long memoryBudget, File tempDir, double fillFactor) {
+        if (memoryBudget < 4L * IO_BUFFER_BYTES) {
+            throw new IllegalArgumentException(
+                    "ExternalBulkLoader: memoryBudget πρέπει να είναι ≥ " + (4 * IO_BUFFER_BYTES) + " bytes");
+        }
+        if (fillFactor <= 0.0 || fillFactor > 1.0) {
+            throw new IllegalArgumentException("ExternalBulkLoader: fillFactor εκτός (0, 1]: " + fillFactor);
+        }
+        this.tree = tree;
+        this.dim = tree.getDimension();
+        this.memoryBudget = memoryBudget;
+        this.tempDir = tempDir;
+        this.fillFactor = fillFactor;
+    }
+
+    /**
+     * Φορτώνει records από ρεύμα: κάθε record γράφεται στο DataFile του δέντρου
+     * και μόνο τα (coords, RecordPointer) περνούν στην εξωτερική ταξινόμηση.
+     *
+     * @throws IllegalArgumentException αν κάποιο record δεν έχει getDimension() συντεταγμένες
+     *                                  (τα records που γράφτηκαν ήδη σβήνονται).
+     */
+    public void load(Iterator<Record> records) throws IOException {
+        DataFile df = tree.getDataFile();
+        // Ο loader είναι ο writer του δέντρου για όλη τη διάρκεια της φόρτωσης
+        ReentrantLock lock = tree.getWriteLock();
+        lock.lock();
+        try (SpillWriter spill = new SpillWriter()) {
+            // Ένα index μόνο για ανάγνωση απορρίπτεται πριν γραφτεί οτιδήποτε στο DataFile
+            tree.checkWritable();
+            Node root;
+            try {
+                while (records.hasNext()) {
+                    Record rec = records.next();
+                    if (rec.getCoords() == null || rec.getCoords().length != dim) {
+                        throw new IllegalArgumentException("ExternalBulkLoader: το record " + rec.getId()
+                                + " δεν έχει " + dim + " συντεταγμένες");
+                    }
+                    RecordPointer rp = df.insertRecord(rec);
+                    try {
+                        spill.add(rec.getCoords(), rp);
+                    } catch (IOException e) {
+                        df.deleteRecord(rp);
+                        throw e;
+                    }
+                }
+                spill.finish();
+                root = build(spill);
+            } catch (IOException | RuntimeException e) {
+                try {
+                    deleteSpilled(spill);
+                } catch (IOException | RuntimeException cleanup) {
+                    e.addSuppressed(cleanup);
+                }
+                throw e;
+            }
+            install(root);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Ξαναχτίζει το index από τα records που υπάρχουν ήδη στο DataFile του δέντρου. */
+    public void loadFromDataFile() throws IOException {
+        ReentrantLock lock = tree.getWriteLock();
+        lock.lock();
+        try (SpillWriter spill = new SpillWriter()) {
+            tree.checkWritable();
+            tree.getDataFile().scan((id, coords, rp) -> spill.add(coords, rp));
+            spill.finish();
+            install(build(spill));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Η νέα ρίζα αντικαθιστά το δέντρο (null: δεν φορτώθηκε τίποτα, το δέντρο μένει ως έχει). */
+    private void install(Node root) throws IOException {
+        if (root != null) {
+            tree.installRoot(root, itemCount);
+        }
+    }
+
+    /** Σβήνει από το DataFile τα records του spill, μετά από αποτυχημένο load(). */
+    private void deleteSpilled(SpillWriter spill) throws IOException {
+        spill.finish();
+        DataFile df = tree.getDataFile();
+        try (DataInputStream in = openInput(spill.file)) {
+            for (long i = 0; i < spill.count; i++) {
+                for (int d = 0; d < dim; d++) in.readDouble();
+                df.deleteRecord(new RecordPointer(in.readInt(), in.readInt()));
+            }
+        }
+    }
+
+    /**
+     * Κατασκευάζει το δέντρο από το spill σε νέες σελίδες· σε αποτυχία οι σελίδες επιστρέφουν
+     * στη free list.
+     *
+     * @return Η ρίζα του νέου δέντρου, ή null αν το spill είναι άδειο.
+     */
+    private Node build(SpillWriter spill) throws IOException {
+        itemCount = spill.count;
+        runCount = 0;
+        mergePasses = 0;
+        peakMemoryBytes = 0;
+        tempBytesWritten = spill.file.length();
+        if (itemCount == 0) {
+            return null;
+        }
+
+        List<File> runs = new ArrayList<>();
+        try {
+            createRuns(spill, runs);
+            int fanIn = (int) Math.max(2, memoryBudget / IO_BUFFER_BYTES - 1);
+            while (runs.size() > fanIn) {
+                List<File> next = new ArrayList<>();
+                for (int i = 0; i < runs.size(); i += fanIn) {
+                    List<File> group = runs.subList(i, Math.min(i + fanIn, runs.size()));
+                    File out = newTempFile();
+                    try (DataOutputStream dos = openOutput(out)) {
+                        merge(group, (key, coords, blk, slot) -> writeItem(dos, key, coords, blk, slot));
+                    }
+                    tempBytesWritten += out.length();
+                    deleteAll(group);
+                    next.add(out);
+                }
+                runs = next;
+                mergePasses++;
+            }
+            mergePasses++;
+
+            Packer packer = new Packer(itemCount);
+            try {
+                merge(runs, (key, coords, blk, slot) -> packer.addPoint(coords, blk, slot));
+            } catch (IOException | RuntimeException e) {
+                packer.freePages(e);
+                throw e;
+            }
+            return packer.root;
+        } finally {
+            deleteAll(runs);
+        }
+    }
+
+    /** Φάση 2: κομμάτια του spill που χωράνε στη μνήμη ταξινομούνται κατά Hilbert σε runs. */
+    private void createRuns(SpillWriter spill, List<File> runs) throws IOException {
+        int bytesPerItem = 8 + 8 * dim + 4 + 4 + 4; // key + coords + blockId + slotId + θέση ταξινόμησης
+        long capacity = (memoryBudget - 2L * IO_BUFFER_BYTES) / bytesPerItem;
+        int runCapacity = (int) Math.max(1, Math.min(Integer.MAX_VALUE - 8, Math.min(capacity, itemCount)));
+
+        long[] keys = new long[runCapacity];
+        double[] coords = new double[runCapacity * dim];
+        int[] blocks = new int[runCapacity];
+        int[] slots = new int[runCapacity];
+        int[] order = new int[runCapacity];
+        peakMemoryBytes = Math.max(peakMemoryBytes, (long) runCapacity * bytesPerItem + 2L * IO_BUFFER_BYTES);
+
+        double[] point = new double[dim];
+        try (DataInputStream in = openInput(spill.file)) {
+            long remaining = itemCount;
+            while (remaining > 0) {
+                int n = (int) Math.min(runCapacity, remaining);
+                for (int i = 0; i < n; i++) {
+                    for (int d = 0; d < dim; d++) {
+                        point[d] = in.readDouble();
+                        coords[i * dim + d] = point[d];
+                    }
+                    blocks[i] = in.readInt();
+                    slots[i] = in.readInt();
+                    keys[i] = HilbertCurve.key(point, spill.min, spill.max);
+                    order[i] = i;
+                }
+                remaining -= n;
+                sortByKey(order, keys, 0, n - 1);
+
+                File run = newTempFile();
+                try (DataOutputStream out = openOutput(run)) {
+                    for (int j = 0; j < n; j++) {
+                        int i = order[j];
+                        out.writeLong(keys[i]);
+                        for (int d = 0; d < dim; d++) out.writeDouble(coords[i * dim + d]);
+                        out.writeInt(blocks[i]);
+                        out.writeInt(slots[i]);
+                    }
+                }
+                tempBytesWritten += run.length();
+                runs.add(run);
+                runCount++;
+            }
+        }
+    }
+
+    /** Φάση 3: k-way merge των runs κατά κλειδί Hilbert. */
+    private void merge(List<File> inputs, ItemSink sink) throws IOException {
+        peakMemoryBytes = Math.max(peakMemoryBytes, (long) (inputs.size() + 1) * IO_BUFFER_BYTES);
+        PriorityQueue<RunReader> pq = new PriorityQueue<>(Comparator.comparingLong(r -> r.key));
+        List<RunReader> readers = new ArrayList<>();
+        try {
+            for (File f : inputs) {
+                RunReader r = new RunReader(f);
+                readers.add(r);
+                if (r.next()) pq.add(r);
+            }
+            while (!pq.isEmpty()) {
+                RunReader r = pq.poll();
+                sink.accept(r.key, r.coords, r.blockId, r.slotId);
+                if (r.next()) pq.add(r);
+            }
+        } finally {
+            for (RunReader r : readers) r.close();
+        }
+    }
+
+    /**
+     * Φάση 4: πακετάρισμα του ταξινομημένου ρεύματος. Τα μεγέθη όλων των επιπέδων είναι
+     * γνωστά από το itemCount, οπότε κάθε κόμβος ξέρει από πριν πόσα entries θα πάρει.
+     */
+    private final class Packer {
+        private final int capacity;
+        private final long[] levelItems;  // πλήθος entries που μοιράζονται στους κόμβους κάθε επιπέδου
+        private final int[] levelNodes;   // πλήθος κόμβων ανά επίπεδο
+        private final int[] produced;     // κόμβοι που έχουν ολοκληρωθεί ανά επίπεδο
+        private final Node[] open;        // ο ανοιχτός κόμβος κάθε επιπέδου
+        private final BufferPool pool;
+        private int[] written = new int[64]; // σελίδες που γράφτηκαν, για την αποδέσμευση σε αποτυχία
+        private int writtenCount;
+        private Node root;
+
+        Packer(long items) throws IOException {
+            int M = tree.getMaxEntries();
+            this.capacity = Math.max(tree.getMinEntries(), Math.min(M, (int) Math.floor(fillFactor * M)));
+            this.pool = tree.getBufferPool();
+
+            List<Long> itemsPerLevel = new ArrayList<>();
+            List<Integer> nodesPerLevel = new ArrayList<>();
+            long count = items;
+            do {
+                int nodes = RStarTree.packedNodes(count, capacity, tree.getMinEntries());
+                itemsPerLevel.add(count);
+                nodesPerLevel.add(nodes);
+                count = nodes;
+            } while (count > 1);
+
+            int height = nodesPerLevel.size();
+            levelItems = new long[height];
+            levelNodes = new int[height];
+            produced = new int[height];
+            open = new Node[height];
+            for (int l = 0; l < height; l++) {
+                levelItems[l] = itemsPerLevel.get(l);
+                levelNodes[l] = nodesPerLevel.get(l);
+            }
+        }
+
+        void addPoint(double[] coords, int blockId, int slotId) throws IOException {
+            addEntry(0, new Entry(new MBR(coords, coords), new RecordPointer(blockId, slotId)));
+        }
+
+        private void addEntry(int level, Entry e) throws IOException {
+            if (open[level] == null) {
+                open[level] = new Node(level, level == 0);
+            }
+            open[level].addEntry(e);
+            if (open[level].getEntries().size() == groupSize(levelItems[level], levelNodes[level], produced[level])) {
+                closeNode(level);
+            }
+        }
+
+        private void closeNode(int level) throws IOException {
+            Node node = open[level];
+            open[level] = null;
+            produced[level]++;
+            boolean top = (level == levelNodes.length - 1);
+            if (writtenCount == written.length) {
+                written = Arrays.copyOf(written, 2 * writtenCount);
+            }
+            written[writtenCount++] = pool.writeNode(-1, node);
+            if (top) {
+                root = node;
+            } else {
+                addEntry(level + 1, Entry.forChild(node));
+            }
+        }
+
+        /** Επιστρέφει στη free list όσες σελίδες γράφτηκαν (η φόρτωση απέτυχε με failure). */
+        void freePages(Exception failure) {
+            for (int i = 0; i < writtenCount; i++) {
+                try {
+                    pool.freePage(written[i]);
+                } catch (IOException e) {
+                    failure.addSuppressed(e);
+                    return;
+                }
+            }
+            writtenCount = 0;
+        }
+    }
+
+    /** Μέγεθος της ομάδας g όταν count στοιχεία μοιράζονται σχεδόν ισόποσα σε groups ομάδες. */
+    private static int groupSize(long count, int groups, int g) {
+        long base = count / groups;
+        long extra = count % groups;
+        return (int) (base + (g < extra ? 1 : 0));
+    }
+
+    /** Quicksort του order[lo..hi] κατά keys[order[i]], χωρίς boxing. */
+    private static void sortByKey(int[] order, long[] keys, int lo, int hi) {
+        while (lo < hi) {
+            if (hi - lo < 16) {
+                for (int i = lo + 1; i <= hi; i++) {
+                    int v = order[i];
+                    int j = i - 1;
+                    while (j >= lo && keys[order[j]] > keys[v]) {
+                        order[j + 1] = order[j];
+                        j--;
+                    }
+                    order[j + 1] = v;
+                }
+                return;
+            }
+            long pivot = keys[order[(lo + hi) >>> 1]];
+            int i = lo, j = hi;
+            while (i <= j) {
+                while (keys[order[i]] < pivot) i++;
+                while (keys[order[j]] > pivot) j--;
+                if (i <= j) {
+                    int t = order[i];
+                    order[i] = order[j];
+                    order[j] = t;
+                    i++;
+                    j--;
+                }
+            }
+            // Αναδρομή στο μικρότερο κομμάτι, επανάληψη στο μεγαλύτερο
+            if (j - lo < hi - i) {
+                sortByKey(order, keys, lo, j);
+                lo = i;
+            } else {
+                sortByKey(order, keys, i, hi);
+                hi = j;
+            }
+        }
+    }
+
+    private interface ItemSink {
+        void accept(long key, double[] coords, int blockId, int slotId) throws IOException;
+    }
+
+    private void writeItem(DataOutputStream out, long key, double[] coords, int blockId, int slotId)
+            throws IOException {
+        out.writeLong(key);
+        for (int d = 0; d < dim; d++) out.writeDouble(coords[d]);
+        out.writeInt(blockId);
+        out.writeInt(slotId);
+    }
+
+    /** Φάση 1: σειριακό αρχείο με (coords, blockId, slotId) και τα όρια των δεδομένων. */
+    private final class SpillWriter implements Closeable {
+        final File file;
+        final double[] min = new double[dim];
+        final double[] max = new double[dim];
+        long count;
+        private DataOutputStream out;
+
+        SpillWriter() throws IOException {
+            file = newTempFile();
+            out = openOutput(file);
+            Arrays.fill(min, Double.POSITIVE_INFINITY);
+            Arrays.fill(max, Double.NEGATIVE_INFINITY);
+        }
+
+        void add(double[] coords, RecordPointer rp) throws IOException {
+            for (int d = 0; d < dim; d++) {
+                out.writeDouble(coords[d]);
+                min[d] = Math.min(min[d], coords[d]);
+                max[d] = Math.max(max[d], coords[d]);
+            }
+            out.writeInt(rp.getBlockId());
+            out.writeInt(rp.getSlotId());
+            count++;
+        }
+
+        void finish() throws IOException {
+            if (out != null) {
+                out.close();
+                out = null;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (out != null) out.close();
+            file.delete();
+        }
+    }
+
+    /** Ανάγνωση ενός ταξινομημένου run, ένα item τη φορά. */
+    private final class RunReader implements Closeable {
+        private final DataInputStream in;
+        final double[] coords = new double[dim];
+        long key;
+        int blockId;
+        int slotId;
+
+        RunReader(File f) throws IOException {
+            in = openInput(f);
+        }
+
+        boolean next() throws IOException {
+            try {
+                key = in.readLong();
+            } catch (EOFException eof) {
+                return false;
+            }
+            for (int d = 0; d < dim; d++) coords[d] = in.readDouble();
+            blockId = in.readInt();
+            slotId = in.readInt();
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    private File newTempFile() throws IOException {
+        File f = File.createTempFile("rstar-bulk", ".tmp", tempDir);
+        f.deleteOnExit();
+        return f;
+    }
+
+    private static DataOutputStream openOutput(File f) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(new FileOutputStream(f), IO_BUFFER_BYTES));
+    }
+
+    private static DataInputStream openInput(File f) throws IOException {
+        return new DataInputStream(new BufferedInputStream(new FileInputStream(f), IO_BUFFER_BYTES));
+    }
+
+    private static void deleteAll(List<File> files) {
+        for (File f : files) f.delete();
+    }
+
+    public long getItemCount() {
+        return itemCount;
+    }
+
+    public int getRunCount() {
+        return runCount;
+    }
+
+    public int getMergePasses() {
+        return mergePasses;
+    }
+
+    public long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /** @return Η μέγιστη μνήμη (bytes) που δέσμευσαν τα buffers ταξινόμησης/merge. */
+    public long getPeakMemoryBytes() {
+        return peakMemoryBytes;
+    }
+
+    public long getTempBytesWritten() {
+        return tempBytesWritten;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("items=%d, runs=%d, mergePasses=%d, memoryBudget=%d KB, peakMemory=%d KB, tempWritten=%d KB",
+                itemCount, runCount, mergePasses, memoryBudget / 1024, peakMemoryBytes / 1024,
+                tempBytesWritten / 1024);
+    }
+}
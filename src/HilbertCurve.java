@@ -0,0 +1,76 @@
+/**
+ * Υπολογισμός θέσης σημείου πάνω στην καμπύλη Hilbert για οποιαδήποτε διάσταση
+ * (αλγόριθμος Skilling, "Programming the Hilbert curve", 2004).
+ * Χρησιμοποιείται για Hilbert-packed bulk load και για χωρική ταξινόμηση.
+ */
+public final class HilbertCurve {
+
+    private HilbertCurve() {
+    }
+
+    /** @return Πόσα bits ανά διάσταση χωράνε σε ένα long κλειδί (έως 31). */
+    public static int bitsPerDimension(int dim) {
+        return Math.max(1, Math.min(31, 63 / dim));
+    }
+
+    /**
+     * Επιστρέφει το κλειδί Hilbert ενός σημείου, αφού κανονικοποιηθεί
+     * κάθε συντεταγμένη στο πλέγμα [0, 2^bits) με βάση τα όρια min/max.
+     */
+    public static long key(double[] point, double[] min, double[] max) {
+        int dim = point.length;
+        int bits = bitsPerDimension(dim);
+        long cells = 1L << bits;
+        int[] x = new int[dim];
+        for (int i = 0; i < dim; i++) {
+            double extent = max[i] - min[i];
+            double t = extent > 0 ? (point[i] - min[i]) / extent : 0.0;
+            long c = (long) (t * cells);
+            x[i] = (int) Math.max(0, Math.min(cells - 1, c));
+        }
+        return index(x, bits);
+    }
+
+    /**
+     * Μετατρέπει ακέραιες συντεταγμένες (bits ανά διάσταση) σε θέση πάνω στην καμπύλη.
+     * Ο πίνακας x τροποποιείται.
+     */
+    public static long index(int[] x, int bits) {
+        int n = x.length;
+        int m = 1 << (bits - 1);
+        // Αντίστροφη αναίρεση (axes -> transpose)
+        for (int q = m; q > 1; q >>= 1) {
+            int p = q - 1;
+            for (int i = 0; i < n; i++) {
+                if ((x[i] & q) != 0) {
+                    x[0] ^= p;
+                } else {
+                    int t = (x[0] ^ x[i]) & p;
+                    x[0] ^= t;
+                    x[i] ^= t;
+                }
+            }
+        }
+        // Gray encode
+        for (int i = 1; i < n; i++) {
+            x[i] ^= x[i - 1];
+        }
+        int t = 0;
+        for (int q = m; q > 1; q >>= 1) {
+            if ((x[n - 1] & q) != 0) {
+                t ^= q - 1;
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            x[i] ^= t;
+        }
+        // Πλέξη των bits του transpose σε ένα κλειδί (MSB πρώτα)
+        long h = 0;
+        for (int b = bits - 1; b >= 0; b--) {
+            for (int i = 0; i < n; i++) {
+                h = (h << 1) | ((x[i] >>> b) & 1);
+            }
+        }
+        return h;
+    }
+}
@@ -4,92 +4,443 @@ import java.nio.channels.FileChannel;
 import java.nio.file.*;
 
 public class IndexFile {
-    public static final int BLOCK_SIZE_INDEX = 32 * 1024; // 32KB σελίδα
+    /**
+     * Πολιτική durability: πότε καλείται channel.force() για τις εγγραφές κόμβων.
+     *   PER_WRITE     – μετά από κάθε writeNode (η παλιά συμπεριφορά).
+     *   PER_OPERATION – μία φορά στο τέλος κάθε λειτουργίας του δέντρου (commit()).
+     *   INTERVAL      – στο τέλος λειτουργίας, αν έχουν περάσει syncIntervalMillis από το τελευταίο force.
+     *                   Δεν υπάρχει timer: το διάστημα ελέγχεται μόνο όταν τελειώνει μια λειτουργία,
+     *                   οπότε οι αλλαγές της τελευταίας περιμένουν την επόμενη ή το flush()/close().
+     *   ON_FLUSH      – μόνο όταν καλεστεί ρητά RStarTree.flush() (ή RStarTree.close()).
+     */
+    public enum Durability { PER_WRITE, PER_OPERATION, INTERVAL, ON_FLUSH }
+
+    public static final int MAX_PAGE_SIZE = 32 * 1024;    // 32KB: μέγεθος block του δίσκου
+    public static final int MIN_PAGE_SIZE = 512;
+    public static final int DEFAULT_MAX_ENTRIES = 50;     // default M· το default μέγεθος σελίδας είναι το μικρότερο που το χωράει
+    public static final int SUPERBLOCK_PAGE = 0;          // η σελίδα 0 κρατάει τα metadata του index
+    private static final int SUPERBLOCK_BYTES = 64;
+    private static final int MAGIC = 0x52535449;          // "RSTI"
+    private static final int FORMAT_VERSION = 1;          // μορφή του superblock
+    private static final int PAGE_VERSION = 1;            // μορφή σελίδας κόμβου
+    private static final int NODE_PAGE = 1;               // tag σελίδας που περιέχει κόμβο
+    private static final int FREE_PAGE = -1;              // tag σελίδας που βρίσκεται στη free list
+    // 4B tag + 1B version + 1B isLeaf + 2B πλήθος entries + 4B level
+    private static final int NODE_HEADER_BYTES = 12;
+
     private final int DIM;               // διάσταση (π.χ. 2)
-    public final int M = 50;             // μέγιστες εγγραφές ανά κόμβο
-    private final int RECORD_SIZE_INDEX; // bytes για κάθε Node
-    private final int SLOTS_PER_PAGE;    // slots/page (συνήθως 1)
+    private final int pageSize;          // bytes ανά σελίδα κόμβου (δύναμη του 2, διαιρεί το MAX_PAGE_SIZE)
+    private final int entryBytes;        // 16·DIM (MBR) + 8 (pointer)
 
     private FileChannel channel;
+    private final boolean readOnly;      // ανοίχτηκε με openReadOnly: καμία εγγραφή στο αρχείο
+    private MappedRegion mapped;         // αν != null, οι αναγνώσεις κόμβων γίνονται μέσω mmap
+    private int nextPageId;              // επόμενη ελεύθερη σελίδα στο τέλος του αρχείου
+
+    // Superblock: κατάσταση του δέντρου, ώστε να ανοίγει ξανά χωρίς rebuild
+    private int maxEntries;
+    private int minEntries;
+    private double reinsertFraction = TreeConfig.DEFAULT_REINSERT_FRACTION;
+    private SplitPolicy splitPolicy = SplitPolicy.RSTAR;
+    private ReinsertOrder reinsertOrder = ReinsertOrder.CLOSE;
+    private boolean aggregateCounts;
+    private int rootPage = -1;
+    private int height;
+    private long entryCount;
+    private int freeListHead = -1;       // πρώτη σελίδα της free list (κάθε ελεύθερη σελίδα δείχνει στην επόμενη)
+    private int freePageCount;
+    private boolean superblockDirty;
 
+    private Durability durability = Durability.PER_OPERATION;
+    private long syncIntervalMillis;
+    private boolean unsynced;            // υπάρχουν εγγραφές που δεν έχουν γίνει force
+    private long lastSyncNanos = System.nanoTime();
+
+    /**
+     * Δημιουργεί νέο (κενό) index file· αν υπάρχει ήδη αρχείο με αυτό το όνομα, διαγράφεται.
+     * Το μέγεθος σελίδας είναι το μικρότερο που χωράει κόμβο DEFAULT_MAX_ENTRIES entries.
+     */
     public IndexFile(String filename, int dimension) throws IOException {
+        this(filename, dimension, pageSizeFor(dimension, DEFAULT_MAX_ENTRIES));
+    }
+
+    /**
+     * Δημιουργεί νέο (κενό) index file με συγκεκριμένο μέγεθος σελίδας κόμβου.
+     * Σελίδες μικρότερες από MAX_PAGE_SIZE μοιράζονται το ίδιο block του δίσκου.
+     *
+     * @param pageSize Δύναμη του 2 στο [MIN_PAGE_SIZE, MAX_PAGE_SIZE].
+     */
+    public IndexFile(String filename, int dimension, int pageSize) throws IOException {
+        this(Paths.get(filename), dimension, pageSize, true, false);
+        this.nextPageId = SUPERBLOCK_PAGE + 1;
+        this.superblockDirty = true;
+        writeSuperblock();
+    }
+
+    private IndexFile(Path path, int dimension, int pageSize, boolean create, boolean readOnly) throws IOException {
+        if (Integer.bitCount(pageSize) != 1 || pageSize < MIN_PAGE_SIZE || pageSize > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("IndexFile: το pageSize πρέπει να είναι δύναμη του 2 στο ["
+                    + MIN_PAGE_SIZE + ", " + MAX_PAGE_SIZE + "], δόθηκε " + pageSize);
+        }
         this.DIM = dimension;
-        // 1B isLeaf + 4B level + 4B parentPage
-        int headerBytes = 1 + 4 + 4;
-        // Κάθε εγγραφή (entry): 16·DIM bytes (ΜΒR) + 8 bytes (pointer)
-        int entryBytes = (16 * DIM) + 8;
-        this.RECORD_SIZE_INDEX = headerBytes + M * entryBytes;
-        this.SLOTS_PER_PAGE = (BLOCK_SIZE_INDEX - 4) / RECORD_SIZE_INDEX;
+        this.pageSize = pageSize;
+        this.entryBytes = (16 * DIM) + 8;
+        if (pageCapacity(dimension, pageSize) < 4) {
+            throw new IllegalArgumentException("IndexFile: σελίδα " + pageSize + " bytes δεν χωράει κόμβο για DIM=" + DIM);
+        }
 
+        this.readOnly = readOnly;
+        if (create) {
+            channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.READ,
+                    StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+        } else if (readOnly) {
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+        } else {
+            channel = FileChannel.open(path,
+                    StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+        }
+    }
+
+    /**
+     * Ανοίγει υπάρχον index file διαβάζοντας μόνο το superblock (O(1)).
+     *
+     * @throws IOException αν το αρχείο δεν είναι index αυτής της μορφής/έκδοσης.
+     */
+    public static IndexFile open(String filename) throws IOException {
+        return open(filename, false);
+    }
+
+    /**
+     * Ανοίγει υπάρχον index file μόνο για ανάγνωση (π.χ. σε read-only replica):
+     * τα ερωτήματα δουλεύουν κανονικά, κάθε εγγραφή αποτυγχάνει με IOException.
+     */
+    public static IndexFile openReadOnly(String filename) throws IOException {
+        return open(filename, true);
+    }
+
+    private static IndexFile open(String filename, boolean readOnly) throws IOException {
         Path path = Paths.get(filename);
-        channel = FileChannel.open(path,
-                StandardOpenOption.CREATE,
-                StandardOpenOption.READ,
-                StandardOpenOption.WRITE,
-                StandardOpenOption.TRUNCATE_EXISTING);
+        ByteBuffer sb = ByteBuffer.allocate(SUPERBLOCK_BYTES);
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            ch.read(sb, SUPERBLOCK_PAGE);
+        }
+        sb.flip();
+        if (sb.remaining() < 8 || sb.getInt() != MAGIC) {
+            // Και τα index που γράφτηκαν πριν υπάρξει superblock (σελίδες 32KB με M σταθερά slots)
+            throw new IOException("IndexFile.open: το " + filename
+                    + " δεν είναι R*-tree index με superblock· πρέπει να ξαναχτιστεί");
+        }
+        int version = sb.getInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("IndexFile.open: μη υποστηριζόμενη έκδοση μορφής " + version);
+        }
+        int dimension = sb.getInt();
+        IndexFile idx = new IndexFile(path, dimension, sb.getInt(), false, readOnly);
+        idx.maxEntries = sb.getInt();
+        idx.minEntries = sb.getInt();
+        idx.rootPage = sb.getInt();
+        idx.height = sb.getInt();
+        idx.entryCount = sb.getLong();
+        idx.nextPageId = sb.getInt();
+        idx.freeListHead = sb.getInt();
+        idx.freePageCount = sb.getInt();
+        idx.reinsertFraction = sb.getDouble();
+        int policy = sb.get();
+        if (policy < 0 || policy >= SplitPolicy.values().length) {
+            throw new IOException("IndexFile.open: άγνωστη πολιτική split " + policy);
+        }
+        idx.splitPolicy = SplitPolicy.values()[policy];
+        int order = sb.get();
+        if (order < 0 || order >= ReinsertOrder.values().length) {
+            throw new IOException("IndexFile.open: άγνωστη σειρά reinsert " + order);
+        }
+        idx.reinsertOrder = ReinsertOrder.values()[order];
+        idx.aggregateCounts = sb.get() != 0;
+        return idx;
+    }
+
+    /** @return true αν το αρχείο ανοίχτηκε με openReadOnly. */
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    private void checkWritable() throws IOException {
+        if (readOnly) {
+            throw new IOException("IndexFile: το index έχει ανοιχτεί μόνο για ανάγνωση");
+        }
+    }
+
+    private void writeSuperblock() throws IOException {
+        checkWritable();
+        ByteBuffer sb = ByteBuffer.allocate(SUPERBLOCK_BYTES);
+        sb.putInt(MAGIC);
+        sb.putInt(FORMAT_VERSION);
+        sb.putInt(DIM);
+        sb.putInt(pageSize);
+        sb.putInt(maxEntries);
+        sb.putInt(minEntries);
+        sb.putInt(rootPage);
+        sb.putInt(height);
+        sb.putLong(entryCount);
+        sb.putInt(nextPageId);
+        sb.putInt(freeListHead);
+        sb.putInt(freePageCount);
+        sb.putDouble(reinsertFraction);
+        sb.put((byte) splitPolicy.ordinal());
+        sb.put((byte) reinsertOrder.ordinal());
+        sb.put((byte) (aggregateCounts ? 1 : 0));
+        sb.flip();
+        channel.write(sb, (long) SUPERBLOCK_PAGE * pageSize);
+        superblockDirty = false;
+        unsynced = true;
+    }
+
+    /** Καταγράφει στο superblock τις παραμέτρους του δέντρου (M, m, reinsert, split). */
+    public void setConfig(TreeConfig config) {
+        if (config.getPageSize() != pageSize || config.getDimension() != DIM) {
+            throw new IllegalArgumentException("IndexFile: το config (" + config + ", DIM=" + config.getDimension()
+                    + ") δεν ταιριάζει με σελίδα " + pageSize + " bytes, DIM=" + DIM);
+        }
+        this.maxEntries = config.getMaxEntries();
+        this.minEntries = config.getMinEntries();
+        this.reinsertFraction = config.getReinsertFraction();
+        this.splitPolicy = config.getSplitPolicy();
+        this.reinsertOrder = config.getReinsertOrder();
+        this.aggregateCounts = config.hasAggregateCounts();
+        this.superblockDirty = true;
+    }
+
+    /** @return Οι παράμετροι του δέντρου όπως είναι αποθηκευμένες στο superblock. */
+    public TreeConfig getConfig() {
+        return new TreeConfig(DIM, pageSize, maxEntries, minEntries, reinsertFraction, splitPolicy,
+                reinsertOrder, aggregateCounts);
+    }
+
+    /** Ενημερώνει την κατάσταση του δέντρου στο superblock (γράφεται στο επόμενο flush/commit). */
+    public void setTreeState(int rootPage, int height, long entryCount) {
+        if (rootPage != this.rootPage || height != this.height || entryCount != this.entryCount) {
+            this.rootPage = rootPage;
+            this.height = height;
+            this.entryCount = entryCount;
+            this.superblockDirty = true;
+        }
+    }
+
+    /**
+     * @return Το μικρότερο μέγεθος σελίδας (δύναμη του 2, τουλάχιστον MIN_PAGE_SIZE) που χωράει
+     *         κόμβο με maxEntries+1 entries (ο κόμβος γράφεται και όσο υπερχειλίζει, πριν το split).
+     */
+    public static int pageSizeFor(int dimension, int maxEntries) {
+        int needed = NODE_HEADER_BYTES + (maxEntries + 1) * ((16 * dimension) + 8);
+        if (needed > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("IndexFile: κόμβος " + maxEntries
+                    + " entries (DIM=" + dimension + ") δεν χωράει σε " + MAX_PAGE_SIZE + " bytes");
+        }
+        return Math.max(MIN_PAGE_SIZE, Integer.highestOneBit(needed - 1) << 1);
+    }
+
+    public int getDimension() {
+        return DIM;
+    }
+
+    /** @return Bytes ανά σελίδα κόμβου. */
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /** @return Πόσα entries χωράνε το πολύ σε μία σελίδα. */
+    public int getPageCapacity() {
+        return pageCapacity(DIM, pageSize);
+    }
+
+    /** @return Πόσα entries διάστασης dimension χωράνε το πολύ σε σελίδα pageSize bytes. */
+    public static int pageCapacity(int dimension, int pageSize) {
+        return Math.min(Short.MAX_VALUE, (pageSize - NODE_HEADER_BYTES) / ((16 * dimension) + 8));
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public int getMinEntries() {
+        return minEntries;
+    }
+
+    public int getRootPage() {
+        return rootPage;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public long getEntryCount() {
+        return entryCount;
+    }
+
+    public int getFreePageCount() {
+        return freePageCount;
+    }
+
+    /**
+     * Ενεργοποιεί/απενεργοποιεί το memory-mapped read path: οι σελίδες διαβάζονται
+     * από MappedByteBuffer segments αντί για FileChannel.read σε νέο heap buffer.
+     */
+    public void setMemoryMapped(boolean enabled) {
+        this.mapped = enabled ? new MappedRegion(channel, MappedRegion.DEFAULT_SEGMENT_SIZE) : null;
+    }
+
+    public boolean isMemoryMapped() {
+        return mapped != null;
+    }
+
+    /** Ορίζει πολιτική durability (το intervalMillis αφορά μόνο το INTERVAL). */
+    public void setDurability(Durability mode, long intervalMillis) {
+        this.durability = mode;
+        this.syncIntervalMillis = intervalMillis;
+    }
+
+    public Durability getDurability() {
+        return durability;
+    }
+
+    /**
+     * @return true αν στο τέλος της τρέχουσας λειτουργίας πρέπει να γίνουν
+     *         durable οι αλλαγές (ώστε ο caller να γράψει πρώτα ό,τι κρατάει στη μνήμη).
+     */
+    public boolean isSyncDue() {
+        switch (durability) {
+            case PER_WRITE:
+            case PER_OPERATION:
+                return true;
+            case INTERVAL:
+                return System.nanoTime() - lastSyncNanos >= syncIntervalMillis * 1_000_000L;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Τέλος λειτουργίας (commit group): ένα force για όλες τις εγγραφές
+     * που έγιναν από το προηγούμενο, αν το επιτρέπει η πολιτική.
+     */
+    public void commit() throws IOException {
+        if (isSyncDue()) {
+            flush();
+        }
+    }
+
+    /** Κάνει force στον δίσκο όσες εγγραφές (και το superblock) δεν έχουν γίνει ακόμη durable. */
+    public void flush() throws IOException {
+        if (superblockDirty) {
+            writeSuperblock();
+        }
+        if (unsynced) {
+            channel.force(true);
+            unsynced = false;
+        }
+        lastSyncNanos = System.nanoTime();
+    }
+
+    /**
+     * Δεσμεύει σελίδα για νέο κόμβο: πρώτα από τη free list, αλλιώς στο τέλος του αρχείου.
+     * Η σελίδα γράφεται στον δίσκο όταν καλεστεί writeNode γι' αυτήν.
+     */
+    public int allocatePage() throws IOException {
+        checkWritable();
+        if (freeListHead >= 0) {
+            int pageId = freeListHead;
+            ByteBuffer buf = ByteBuffer.allocate(8);
+            channel.read(buf, (long) pageId * pageSize);
+            buf.flip();
+            if (buf.getInt() != FREE_PAGE) {
+                throw new IOException("allocatePage: η σελίδα " + pageId + " της free list δεν είναι ελεύθερη");
+            }
+            freeListHead = buf.getInt();
+            freePageCount--;
+            superblockDirty = true;
+            return pageId;
+        }
+        superblockDirty = true;
+        return nextPageId++;
+    }
+
+    /**
+     * Επιστρέφει μια σελίδα που δεν χρησιμοποιείται πια στη free list,
+     * ώστε να ξαναχρησιμοποιηθεί από επόμενο allocatePage().
+     */
+    public void freePage(int pageId) throws IOException {
+        checkWritable();
+        ByteBuffer buf = ByteBuffer.allocate(8);
+        buf.putInt(FREE_PAGE);
+        buf.putInt(freeListHead);
+        buf.flip();
+        channel.write(buf, (long) pageId * pageSize);
+        unsynced = true;
+        freeListHead = pageId;
+        freePageCount++;
+        superblockDirty = true;
     }
 
     /**
      * Γράφει/ενημερώνει τον κόμβο node σε συγκεκριμένο pageId.
      * Αν pageId<0, δημιουργεί καινούργια σελίδα στο τέλος.
      * Επιστρέφει το pageId όπου γράφτηκε.
+     *
+     * Μορφή σελίδας: header (tag, version, isLeaf, πλήθος entries, level)
+     * και ακολουθούν μόνο τα υπάρχοντα entries· το υπόλοιπο της σελίδας δεν γράφεται.
      */
     public int writeNode(int pageId, Node node) throws IOException {
+        checkWritable();
         boolean isLeaf = node.isLeaf();
-        int level = node.getLevel();
-        int parentPage = node.getParentPage();
-        ByteBuffer buf = ByteBuffer.allocate(BLOCK_SIZE_INDEX);
-        // Header: liveCount = 1 (έγκυρος)
-        buf.putInt(1);
-        // 1B isLeaf
+        int count = node.getEntries().size();
+        if (count > getPageCapacity()) {
+            throw new IOException("writeNode: κόμβος με " + count + " entries δεν χωράει σε σελίδα "
+                    + pageSize + " bytes");
+        }
+        ByteBuffer buf = ByteBuffer.allocate(NODE_HEADER_BYTES + count * entryBytes);
+        buf.putInt(NODE_PAGE);
+        buf.put((byte) PAGE_VERSION);
         buf.put((byte) (isLeaf ? 1 : 0));
-        // 4B level
-        buf.putInt(level);
-        // 4B parentPage
-        buf.putInt(parentPage);
-
-        int writtenEntries = node.getEntries().size();
-        for (int i = 0; i < M; i++) {
-            if (i < writtenEntries) {
-                Entry e = node.getEntries().get(i);
-                double[] mn = e.getMBR().getMin();
-                double[] mx = e.getMBR().getMax();
-                // 16·DIM bytes για min+max
-                for (int d = 0; d < DIM; d++) buf.putDouble(mn[d]);
-                for (int d = 0; d < DIM; d++) buf.putDouble(mx[d]);
-                if (isLeaf) {
-                    // Leaf: recordPointer = 8 bytes (blockId, slotId)
-                    RecordPointer rp = e.getPointer();
-                    buf.putInt(rp.getBlockId());
-                    buf.putInt(rp.getSlotId());
-                } else {
-                    // Internal: childPage (4B) + padding (4B)
-                    int childPage = e.getChildPage();
-                    buf.putInt(childPage);
-                    buf.putInt(0); // padding
-                }
+        buf.putShort((short) count);
+        buf.putInt(node.getLevel());
+
+        for (Entry e : node.getEntries()) {
+            double[] mn = e.getMBR().getMin();
+            double[] mx = e.getMBR().getMax();
+            // 16·DIM bytes για min+max
+            for (int d = 0; d < DIM; d++) buf.putDouble(mn[d]);
+            for (int d = 0; d < DIM; d++) buf.putDouble(mx[d]);
+            if (isLeaf) {
+                // Leaf: recordPointer = 8 bytes (blockId, slotId)
+                RecordPointer rp = e.getPointer();
+                buf.putInt(rp.getBlockId());
+                buf.putInt(rp.getSlotId());
             } else {
-                // Γεμίζουμε με zeros
-                for (int b = 0; b < (16 * DIM) + 8; b++) {
-                    buf.put((byte) 0);
-                }
+                // Internal: childPage (4B) + πλήθος σημείων του υποδέντρου (4B)
+                buf.putInt(e.getChildPage());
+                buf.putInt(e.getCount());
             }
         }
-
-        // Γεμίζουμε υπόλοιπο σελίδας με μηδενικά
-        while (buf.position() < BLOCK_SIZE_INDEX) {
-            buf.put((byte) 0);
-        }
         buf.flip();
 
         if (pageId < 0) {
-            long fileSize = channel.size();
-            pageId = (int) (fileSize / BLOCK_SIZE_INDEX);
+            pageId = allocatePage();
         }
 
-        long offset = (long) pageId * BLOCK_SIZE_INDEX;
-        channel.write(buf, offset);
-        channel.force(true);
+        long offset = (long) pageId * pageSize;
+        while (buf.hasRemaining()) {
+            channel.write(buf, offset + buf.position());
+        }
+        if (durability == Durability.PER_WRITE) {
+            channel.force(true);
+        } else {
+            unsynced = true;
+        }
 
         return pageId;
     }
@@ -98,25 +449,43 @@ public class IndexFile {
      * Διαβάζει και επιστρέφει τον κόμβο που βρίσκεται στο pageId.
      * Τα στοιχεία των παιδιών (childPage) αποθηκεύονται στο Entry,
      * αλλά δεν έχουν συνδεθεί ακόμα ως αντικείμενα Node.
+     *
+     * @return null αν η σελίδα δεν περιέχει κόμβο (ελεύθερη ή δεν έχει γραφτεί ποτέ).
      */
     public Node readNode(int pageId) throws IOException {
-        long offset = (long) pageId * BLOCK_SIZE_INDEX;
-        ByteBuffer buf = ByteBuffer.allocate(BLOCK_SIZE_INDEX);
-        channel.read(buf, offset);
-        buf.flip();
-
-        int liveCount = buf.getInt();
-        if (liveCount <= 0) return null;
-
+        long offset = (long) pageId * pageSize;
+        ByteBuffer buf = null;
+        if (mapped != null) {
+            // Zero-copy: αποκωδικοποίηση κατευθείαν από το mapping
+            ByteBuffer segment = mapped.segmentFor(offset, NODE_HEADER_BYTES);
+            if (segment != null) {
+                int count = segment.getShort(mapped.offsetOf(offset) + 6);
+                if (mapped.segmentFor(offset, NODE_HEADER_BYTES + count * entryBytes) != null) {
+                    buf = segment.duplicate();
+                    buf.position(mapped.offsetOf(offset));
+                }
+            }
+        }
+        if (buf == null) {
+            buf = ByteBuffer.allocate(pageSize);
+            channel.read(buf, offset);
+            buf.flip();
+        }
+        if (buf.remaining() < NODE_HEADER_BYTES || buf.getInt() != NODE_PAGE) {
+            return null;
+        }
+        int version = buf.get();
+        if (version != PAGE_VERSION) {
+            throw new IOException("readNode: η σελίδα " + pageId + " έχει έκδοση μορφής " + version);
+        }
         boolean isLeaf = buf.get() == 1;
+        int count = buf.getShort();
         int level = buf.getInt();
-        int parentPage = buf.getInt();
 
         Node node = new Node(level, isLeaf);
         node.setPageId(pageId);
-        node.setParentPage(parentPage);
 
-        for (int i = 0; i < M; i++) {
+        for (int i = 0; i < count; i++) {
             double[] mn = new double[DIM];
             double[] mx = new double[DIM];
             for (int d = 0; d < DIM; d++) mn[d] = buf.getDouble();
@@ -126,21 +495,21 @@ public class IndexFile {
             int a = buf.getInt();
             int b = buf.getInt();
             if (isLeaf) {
-                if (a != 0 || b != 0) {
-                    RecordPointer rp = new RecordPointer(a, b);
-                    node.addEntry(new Entry(mbr, rp));
-                }
+                node.addEntry(new Entry(mbr, new RecordPointer(a, b)));
             } else {
-                if (a != 0) {
-                    node.addEntry(new Entry(mbr, a));
-                }
+                node.addEntry(new Entry(mbr, a, b));
             }
         }
-        node.recomputeMBR();
+        node.publish();
         return node;
     }
 
+    /**
+     * Γράφει το superblock, κάνει force και κλείνει το αρχείο. Οι κόμβοι που κρατάει ακόμη
+     * ένα BufferPool δεν γράφονται από εδώ· ένα δέντρο κλείνει με RStarTree.close().
+     */
     public void close() throws IOException {
+        flush();
         channel.close();
     }
 }
@@ -0,0 +1,156 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Best-first k-NN του RStarTree (kNNQuery, kNNQueryBatch) πάνω σε primitive πίνακες.
+ *
+ * Η ουρά κρατάει μόνο (minDist², σελίδα, επίπεδο) των παιδιών που δεν έχουν διαβαστεί·
+ * μια σελίδα διαβάζεται όταν βγει πρώτη από την ουρά. Τα k καλύτερα σημεία μέχρι στιγμής
+ * βρίσκονται σε max-heap μεγέθους k, οπότε entries και σελίδες πιο μακριά από το
+ * k-οστό δεν μπαίνουν καθόλου, και η αναζήτηση σταματάει μόλις η πλησιέστερη σελίδα
+ * της ουράς απέχει τουλάχιστον όσο το k-οστό σημείο.
+ *
+ * Ένα αντικείμενο ανά thread, που ξαναχρησιμοποιείται: οι πίνακες μεγαλώνουν όσο χρειαστεί
+ * και μετά η αναζήτηση δεν δεσμεύει μνήμη πέρα από τη λίστα του αποτελέσματος.
+ */
+final class KnnSearch {
+    // Ουρά σελίδων: min-heap κατά nodeDist
+    private double[] nodeDist = new double[64];
+    private int[] nodePage = new int[64];
+    private int[] nodeLevel = new int[64];
+    private int nodes;
+
+    // Τα k καλύτερα σημεία: max-heap κατά bestDist (bestDist[0] = το k-οστό)
+    private double[] bestDist = new double[16];
+    private RecordPointer[] best = new RecordPointer[16];
+    private int found;
+
+    /** @return Τα (έως) k πλησιέστερα σημεία στο queryPt, με αύξουσα απόσταση. */
+    List<RecordPointer> search(Node.View root, double[] queryPt, int k, ReadSet reads) throws IOException {
+        nodes = 0;
+        found = 0;
+        if (k <= 0 || root.getMBR() == null) {
+            return new ArrayList<>();
+        }
+        if (best.length < k) {
+            bestDist = new double[k];
+            best = new RecordPointer[k];
+        }
+        expand(root, queryPt, k);
+        while (nodes > 0) {
+            if (found == k && nodeDist[0] >= bestDist[0]) {
+                break; // καμία σελίδα της ουράς δεν μπορεί να δώσει κάτι πλησιέστερο
+            }
+            int page = nodePage[0];
+            int level = nodeLevel[0];
+            popNode();
+            expand(reads.read(page, level), queryPt, k);
+        }
+
+        // Εξαγωγή από το max-heap: από το πιο μακρινό προς το πλησιέστερο
+        RecordPointer[] out = new RecordPointer[found];
+        for (int i = found - 1; i >= 0; i--) {
+            out[i] = best[0];
+            popBest();
+        }
+        return new ArrayList<>(Arrays.asList(out));
+    }
+
+    private void expand(Node.View n, double[] queryPt, int k) {
+        List<Entry> entries = n.getEntries();
+        boolean leaf = n.isLeaf();
+        for (int i = 0, size = entries.size(); i < size; i++) {
+            Entry e = entries.get(i);
+            double d = e.getMBR().minDistSq(queryPt);
+            if (found == k && d >= bestDist[0]) {
+                continue;
+            }
+            if (leaf) {
+                offerBest(d, e.getPointer(), k);
+            } else if (e.isInternalEntry()) {
+                pushNode(d, e.getChildPage(), n.getLevel() - 1);
+            }
+        }
+    }
+
+    private void pushNode(double d, int page, int level) {
+        if (nodes == nodeDist.length) {
+            nodeDist = Arrays.copyOf(nodeDist, 2 * nodes);
+            nodePage = Arrays.copyOf(nodePage, 2 * nodes);
+            nodeLevel = Arrays.copyOf(nodeLevel, 2 * nodes);
+        }
+        int i = nodes++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (nodeDist[parent] <= d) break;
+            nodeDist[i] = nodeDist[parent];
+            nodePage[i] = nodePage[parent];
+            nodeLevel[i] = nodeLevel[parent];
+            i = parent;
+        }
+        nodeDist[i] = d;
+        nodePage[i] = page;
+        nodeLevel[i] = level;
+    }
+
+    private void popNode() {
+        int last = --nodes;
+        double d = nodeDist[last];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= nodes) break;
+            if (child + 1 < nodes && nodeDist[child + 1] < nodeDist[child]) child++;
+            if (d <= nodeDist[child]) break;
+            nodeDist[i] = nodeDist[child];
+            nodePage[i] = nodePage[child];
+            nodeLevel[i] = nodeLevel[child];
+            i = child;
+        }
+        nodeDist[i] = d;
+        nodePage[i] = nodePage[last];
+        nodeLevel[i] = nodeLevel[last];
+    }
+
+    /** Προσθέτει το σημείο στα k καλύτερα (αν δεν είναι γεμάτα, ή στη θέση του k-οστού). */
+    private void offerBest(double d, RecordPointer rp, int k) {
+        if (found < k) {
+            int i = found++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (bestDist[parent] >= d) break;
+                bestDist[i] = bestDist[parent];
+                best[i] = best[parent];
+                i = parent;
+            }
+            bestDist[i] = d;
+            best[i] = rp;
+        } else {
+            siftDownBest(0, d, rp, found);
+        }
+    }
+
+    private void popBest() {
+        int last = --found;
+        siftDownBest(0, bestDist[last], best[last], found);
+        best[last] = null; // να μην κρατάμε αναφορές μετά την αναζήτηση
+    }
+
+    private void siftDownBest(int i, double d, RecordPointer rp, int size) {
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) break;
+            if (child + 1 < size && bestDist[child + 1] > bestDist[child]) child++;
+            if (d >= bestDist[child]) break;
+            bestDist[i] = bestDist[child];
+            best[i] = best[child];
+            i = child;
+        }
+        if (size > 0) {
+            bestDist[i] = d;
+            best[i] = rp;
+        }
+    }
+}
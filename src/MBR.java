@@ -1,3 +1,5 @@
+import java.util.Arrays;
+
 public class MBR implements Cloneable {
     private double[] min;  // χαμηλότερες συντεταγμένες
     private double[] max;  // υψηλότερες συντεταγμένες
@@ -65,6 +67,14 @@ public class MBR implements Cloneable {
 
     /** Υπολογίζει την ελάχιστη απόσταση από σημείο (minDist για k-NN). */
     public double minDist(double[] point) {
+        return Math.sqrt(minDistSq(point));
+    }
+
+    /**
+     * Το τετράγωνο του minDist: ίδια διάταξη χωρίς Math.sqrt, για συγκρίσεις αποστάσεων
+     * (k-NN, nearestCursor).
+     */
+    public double minDistSq(double[] point) {
         double sum = 0.0;
         for (int i = 0; i < min.length; i++) {
             double d = 0.0;
@@ -75,7 +85,7 @@ public class MBR implements Cloneable {
             }
             sum += d * d;
         }
-        return Math.sqrt(sum);
+        return sum;
     }
 
     /** Επιστρέφει αθροιστικό margin (περίμετρο) του MBR. */
@@ -87,6 +97,19 @@ public class MBR implements Cloneable {
         return sum;
     }
 
+    /** @return Το εμβαδόν της τομής με το other (0 αν δεν τέμνονται). */
+    public double overlapArea(MBR other) {
+        double prod = 1.0;
+        for (int i = 0; i < min.length; i++) {
+            double side = Math.min(max[i], other.max[i]) - Math.max(min[i], other.min[i]);
+            if (side <= 0.0) {
+                return 0.0;
+            }
+            prod *= side;
+        }
+        return prod;
+    }
+
     /** Ενώνει δύο MBR σε νέο MBR που τα περιέχει και τα δύο. */
     public static MBR union(MBR a, MBR b) {
         int dim = a.min.length;
@@ -111,4 +134,18 @@ public class MBR implements Cloneable {
             throw new AssertionError("MBR clone failed", e);
         }
     }
-}
\ No newline at end of file
+
+    /** Δύο MBR είναι ίσα όταν έχουν ακριβώς τις ίδιες γωνίες. */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof MBR)) return false;
+        MBR other = (MBR) o;
+        return Arrays.equals(min, other.min) && Arrays.equals(max, other.max);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(min) + Arrays.hashCode(max);
+    }
+}
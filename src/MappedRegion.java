@@ -0,0 +1,86 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Read-only memory mapping ενός αρχείου σε segments σταθερού μεγέθους.
+ * Οι αναγνώσεις γίνονται κατευθείαν από το page cache του λειτουργικού, χωρίς αντιγραφή
+ * σε heap buffer. Οι εγγραφές συνεχίζουν να γίνονται μέσω του FileChannel· σε Linux/Windows
+ * το mapping τις βλέπει αμέσως (κοινό page cache).
+ *
+ * Κάθε segment αντιστοιχίζεται μέχρι το τρέχον τέλος του αρχείου και ξαναγίνεται map
+ * (remap) όταν ζητηθεί θέση πέρα από αυτό, δηλαδή όταν το αρχείο έχει μεγαλώσει.
+ * Η ανάγνωση ήδη αντιστοιχισμένου segment δεν κλειδώνει· μόνο το remap είναι synchronized.
+ */
+public class MappedRegion {
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024; // 64 MB
+
+    private final FileChannel channel;
+    private final int segmentShift;
+    private final long segmentMask;
+    private volatile MappedByteBuffer[] segments = new MappedByteBuffer[0];
+    private long remaps;
+
+    /**
+     * @param channel     Το κανάλι του αρχείου.
+     * @param segmentSize Μέγεθος segment· δύναμη του 2 και πολλαπλάσιο του block size,
+     *                    ώστε κανένα block/σελίδα να μη μοιράζεται σε δύο segments.
+     */
+    public MappedRegion(FileChannel channel, int segmentSize) {
+        if (Integer.bitCount(segmentSize) != 1) {
+            throw new IllegalArgumentException("MappedRegion: το segmentSize πρέπει να είναι δύναμη του 2");
+        }
+        this.channel = channel;
+        this.segmentShift = Integer.numberOfTrailingZeros(segmentSize);
+        this.segmentMask = segmentSize - 1;
+    }
+
+    /**
+     * Επιστρέφει το segment που περιέχει ολόκληρο το διάστημα [pos, pos+len),
+     * ή null αν το διάστημα βγαίνει εκτός αρχείου ή εκτείνεται σε δύο segments
+     * (τότε ο caller διαβάζει μέσω του FileChannel). Οι αναγνώσεις γίνονται με
+     * absolute get στη θέση offsetOf(pos).
+     */
+    public ByteBuffer segmentFor(long pos, int len) throws IOException {
+        int seg = (int) (pos >>> segmentShift);
+        long end = (pos & segmentMask) + len;
+        if (end > segmentMask + 1) {
+            return null;
+        }
+        MappedByteBuffer[] current = segments;
+        MappedByteBuffer buf = (seg < current.length) ? current[seg] : null;
+        if (buf == null || buf.capacity() < end) {
+            return remap(seg, end);
+        }
+        return buf;
+    }
+
+    private synchronized ByteBuffer remap(int seg, long end) throws IOException {
+        MappedByteBuffer buf = (seg < segments.length) ? segments[seg] : null;
+        if (buf == null || buf.capacity() < end) {
+            long segStart = (long) seg << segmentShift;
+            long available = Math.min(segmentMask + 1, channel.size() - segStart);
+            if (available < end) {
+                return null;
+            }
+            buf = channel.map(FileChannel.MapMode.READ_ONLY, segStart, available);
+            MappedByteBuffer[] grown = Arrays.copyOf(segments, Math.max(segments.length, seg + 1));
+            grown[seg] = buf;
+            segments = grown;
+            remaps++;
+        }
+        return buf;
+    }
+
+    /** @return Η θέση του pos μέσα στο segment του. */
+    public int offsetOf(long pos) {
+        return (int) (pos & segmentMask);
+    }
+
+    /** @return Πόσες φορές έγινε map/remap κάποιου segment. */
+    public synchronized long getRemaps() {
+        return remaps;
+    }
+}
@@ -0,0 +1,85 @@
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+/**
+ * Cursor του RStarTree.nearestCursor(): incremental best-first διάσχιση (distance browsing).
+ * Η ουρά κρατάει σελίδες που δεν έχουν διαβαστεί ακόμη και σημεία, με κλειδί την ελάχιστη
+ * απόστασή τους (στο τετράγωνο) από το σημείο του ερωτήματος· μια σελίδα διαβάζεται μόνο
+ * όταν βγει πρώτη από την ουρά, οπότε τα σημεία επιστρέφονται με αύξουσα απόσταση και για k αποτελέσματα
+ * διαβάζονται μόνο οι σελίδες που χρειάζονται για αυτά.
+ */
+final class NearestCursor extends QueryCursor {
+    private final RStarTree tree;
+    private final double[] queryPt;
+    private final PriorityQueue<Candidate> queue = new PriorityQueue<>();
+
+    /** Σελίδα (pointer == null) ή σημείο στην ουρά, με την απόστασή του. */
+    private static final class Candidate implements Comparable<Candidate> {
+        final double distance;
+        final int page;
+        final int level;
+        final RecordPointer pointer;
+
+        Candidate(double distance, int page, int level) {
+            this.distance = distance;
+            this.page = page;
+            this.level = level;
+            this.pointer = null;
+        }
+
+        Candidate(double distance, RecordPointer pointer) {
+            this.distance = distance;
+            this.page = -1;
+            this.level = -1;
+            this.pointer = pointer;
+        }
+
+        @Override
+        public int compareTo(Candidate other) {
+            return Double.compare(distance, other.distance);
+        }
+    }
+
+    NearestCursor(RStarTree tree, double[] queryPt, int rootPage, int rootLevel) {
+        this.tree = tree;
+        this.queryPt = queryPt.clone();
+        queue.add(new Candidate(0.0, rootPage, rootLevel));
+    }
+
+    @Override
+    RecordPointer advance() throws IOException {
+        while (!queue.isEmpty()) {
+            Candidate top = queue.poll();
+            if (top.pointer != null) {
+                return top.pointer;
+            }
+            Candidate[] children = tree.snapshotPage(top.page, top.level, this::children);
+            if (children != null) {
+                for (Candidate c : children) {
+                    queue.add(c);
+                }
+            }
+        }
+        return null;
+    }
+
+    @Override
+    void release() {
+        queue.clear();
+    }
+
+    private Candidate[] children(Node.View N) {
+        Candidate[] out = new Candidate[N.getEntries().size()];
+        int count = 0;
+        for (Entry e : N.getEntries()) {
+            double d = e.getMBR().minDistSq(queryPt);
+            if (N.isLeaf()) {
+                out[count++] = new Candidate(d, e.getPointer());
+            } else if (e.isInternalEntry()) {
+                out[count++] = new Candidate(d, e.getChildPage(), N.getLevel() - 1);
+            }
+        }
+        return count == out.length ? out : Arrays.copyOf(out, count);
+    }
+}
@@ -6,8 +6,52 @@ public class Node {
     private boolean isLeaf;
     private List<Entry> entries;
     private MBR mbr;
-    private int parentPage = -1;
     private int pageId = -1;
+    // Τι βλέπουν οι αναγνώστες χωρίς κλείδωμα· αλλάζει μόνο με publish()
+    private volatile View view;
+
+    /**
+     * Αμετάβλητο στιγμιότυπο του κόμβου, για τους optimistic αναγνώστες του RStarTree.
+     * Ο writer αλλάζει επιτόπου τη λίστα entries και τα ίδια τα Entry (setMBR/setCount),
+     * οπότε το στιγμιότυπο κρατάει δικά του αντίγραφα των entries· ένας αναγνώστης βλέπει
+     * πάντα ολόκληρη την κατάσταση του κόμβου όπως ήταν σε κάποιο publish(), ποτέ μισή.
+     */
+    public static final class View {
+        private final int pageId;
+        private final int level;
+        private final boolean isLeaf;
+        private final List<Entry> entries;
+        private final MBR mbr;
+
+        private View(int pageId, int level, boolean isLeaf, List<Entry> entries, MBR mbr) {
+            this.pageId = pageId;
+            this.level = level;
+            this.isLeaf = isLeaf;
+            this.entries = entries;
+            this.mbr = mbr;
+        }
+
+        public int getPageId() {
+            return pageId;
+        }
+
+        public int getLevel() {
+            return level;
+        }
+
+        public boolean isLeaf() {
+            return isLeaf;
+        }
+
+        /** @return Τα entries του στιγμιότυπου (λίστα μόνο για ανάγνωση). */
+        public List<Entry> getEntries() {
+            return entries;
+        }
+
+        public MBR getMBR() {
+            return mbr;
+        }
+    }
 
     public Node(int level, boolean isLeaf) {
         this.level = level;
@@ -15,6 +59,7 @@ public class Node {
         this.entries = new ArrayList<>();
         // Εδώ δεν ορίζουμε mbr ακόμη (θα υπολογιστεί όταν προστεθεί το πρώτο entry)
         this.mbr = null;
+        this.view = new View(pageId, level, isLeaf, List.of(), null);
     }
 
     public int getLevel() {
@@ -29,14 +74,6 @@ public class Node {
         return entries;
     }
 
-    public int getParentPage() {
-        return parentPage;
-    }
-
-    public void setParentPage(int parentPage) {
-        this.parentPage = parentPage;
-    }
-
     public int getPageId() {
         return pageId;
     }
@@ -49,6 +86,24 @@ public class Node {
         return mbr;
     }
 
+    /** @return Το τελευταίο στιγμιότυπο που δημοσιεύτηκε με publish(). */
+    public View view() {
+        return view;
+    }
+
+    /**
+     * Δημοσιεύει την τρέχουσα κατάσταση του κόμβου στους αναγνώστες. Καλείται από τον writer
+     * όταν ο κόμβος διαβάζεται ή γράφεται στο buffer pool και στο τέλος κάθε λειτουργίας
+     * για τους κόμβους που άλλαξαν, πριν η έκδοση της σελίδας τους γίνει ξανά άρτια.
+     */
+    public void publish() {
+        Entry[] copy = new Entry[entries.size()];
+        for (int i = 0; i < copy.length; i++) {
+            copy[i] = entries.get(i).copy();
+        }
+        view = new View(pageId, level, isLeaf, List.of(copy), mbr);
+    }
+
     public void addEntry(Entry e) {
         entries.add(e);
         if (mbr == null) {
@@ -58,6 +113,18 @@ public class Node {
         }
     }
 
+    /** @return Πλήθος σημείων στο υποδέντρο του κόμβου (άθροισμα των getCount() των entries). */
+    public int subtreeCount() {
+        if (isLeaf) {
+            return entries.size();
+        }
+        int total = 0;
+        for (Entry e : entries) {
+            total += e.getCount();
+        }
+        return total;
+    }
+
     public void recomputeMBR() {
         if (entries.isEmpty()) {
             mbr = null;
@@ -69,9 +136,4 @@ public class Node {
         }
         mbr = newMBR;
     }
-
-    public void recomputeMBRUpward() {
-        recomputeMBR();
-        // Ο γονέας θα ενημερωθεί από το RStarTree όταν χρειάζεται
-    }
 }
\ No newline at end of file
@@ -23,6 +23,8 @@ public class OSMParser {
     /**
      * Διαβάζει το αρχείο OSM και εισάγει κάθε node στο R*-tree.
      * Για κόμβους χωρίς name, δημιουργεί τυχαίο μικρό όνομα.
+     * Στο τέλος κάνει flush το δέντρο, ώστε όλη η εισαγωγή να είναι durable
+     * ακόμη κι αν το IndexFile χρησιμοποιεί πολιτική ON_FLUSH/INTERVAL.
      */
     public void parse(String filename)
             throws ParserConfigurationException, SAXException, IOException {
@@ -91,5 +93,6 @@ public class OSMParser {
                 return new String(nameChars);
             }
         });
+        tree.flush();
     }
 }
\ No newline at end of file
@@ -0,0 +1,77 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Lazy αποτελέσματα ερωτήματος στο RStarTree (RStarTree.rangeCursor, RStarTree.nearestCursor):
+ * οι σελίδες του index διαβάζονται μόνο όταν ζητηθεί το επόμενο αποτέλεσμα, οπότε η μνήμη
+ * μένει φραγμένη από το βάθος/μέτωπο της διάσχισης και όχι από το πλήθος των αποτελεσμάτων.
+ *
+ * Κάθε σελίδα αντιγράφεται και επικυρώνεται μόνη της (optimistic, όπως στα υπόλοιπα ερωτήματα).
+ * Ο cursor δεν είναι όμως στιγμιότυπο όλου του δέντρου: αν ο writer αλλάζει το δέντρο όσο
+ * ο cursor είναι ανοιχτός, σημεία που μετακινήθηκαν μπορεί να χαθούν ή να εμφανιστούν δύο φορές.
+ *
+ * Το stream() επιτρέπει limit(), findFirst() κ.λπ.· η διάσχιση σταματάει μόλις σταματήσει
+ * και το stream. Τα σφάλματα I/O φτάνουν στον καλούντα ως UncheckedIOException.
+ */
+public abstract class QueryCursor implements Iterator<RecordPointer>, AutoCloseable {
+    private RecordPointer next;
+    private boolean closed;
+
+    /** @return Το επόμενο αποτέλεσμα, ή null αν η διάσχιση τελείωσε. */
+    abstract RecordPointer advance() throws IOException;
+
+    /** Αφήνει ό,τι κρατάει η διάσχιση (στοίβα, ουρά, buffer φύλλου). */
+    abstract void release();
+
+    @Override
+    public boolean hasNext() {
+        if (closed) {
+            return false;
+        }
+        if (next == null) {
+            try {
+                next = advance();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            if (next == null) {
+                close();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public RecordPointer next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        RecordPointer out = next;
+        next = null;
+        return out;
+    }
+
+    /** Σταματάει τη διάσχιση· τα επόμενα hasNext() επιστρέφουν false. */
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            next = null;
+            release();
+        }
+    }
+
+    /** @return Sequential stream πάνω στον cursor· το close() του stream κλείνει και τον cursor. */
+    public Stream<RecordPointer> stream() {
+        Spliterator<RecordPointer> split = Spliterators.spliteratorUnknownSize(this,
+                Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(split, false).onClose(this::close);
+    }
+}
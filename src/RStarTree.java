@@ -1,17 +1,53 @@
 import java.io.IOException;
-import java.nio.ByteBuffer;
-import java.nio.channels.FileChannel;
+import java.io.UncheckedIOException;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
 
-public class RStarTree {
+public class RStarTree implements AutoCloseable {
     private final int DIM;
-    private final int M = 50;   // Μέγιστος αριθμός entries ανά κόμβο
-    private final int m = 25;   // Ελάχιστος αριθμός entries μετά split
+    private final int M;        // Μέγιστος αριθμός entries ανά κόμβο
+    private final int m;        // Ελάχιστος αριθμός entries μετά split
+    private final TreeConfig config;
+    public static final double DEFAULT_FILL_FACTOR = 1.0; // γέμισμα κόμβων στο bulkLoad
+    private static final int OVERLAP_CANDIDATES = 32;     // nearly-minimum overlap (R*-tree, p = 32)
 
     private final DataFile dataFile;
     private final IndexFile indexFile;
-
-    private Node root;
+    private final BufferPool bufferPool;
+
+    private volatile Node root;         // αλλάζει μόνο από τον writer· οι αναγνώστες κρατούν στιγμιότυπο
+    private volatile long entryCount;   // πλήθος σημείων στο δέντρο (αποθηκεύεται στο superblock)
+
+    // Ένας writer, πολλοί αναγνώστες: οι μεταβολές σειριοποιούνται με το writeLock και κάθε
+    // σελίδα που αλλάζει γίνεται latch (περιττή έκδοση στο BufferPool) μέχρι το τέλος της
+    // λειτουργίας. Οι αναγνώστες δεν κλειδώνουν· διαβάζουν μόνο αμετάβλητα στιγμιότυπα των κόμβων
+    // (Node.View), που δημοσιεύονται πριν η έκδοση γίνει ξανά άρτια, και επικυρώνουν τις
+    // εκδόσεις ανά σελίδα και στο τέλος του ερωτήματος (ReadSet).
+    private static final int OPTIMISTIC_ATTEMPTS = 4;  // μετά από τόσες συγκρούσεις, με writeLock
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final BitSet latchedPages = new BitSet();
+    private int[] latched = new int[16];
+    private Node[] latchedNodes = new Node[16];
+    private int latchedCount;
+    private final LongAdder optimisticRetries = new LongAdder();
+
+    // Παράλληλο range query (rangeQueryParallel)
+    public static final long DEFAULT_PARALLEL_THRESHOLD = 64;  // σελίδες φύλλων ανά εργασία
+    private ForkJoinPool parallelPool;                          // δημιουργείται στην πρώτη χρήση
+    private volatile long parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+
+    // Μηχανή k-NN ανά thread (οι πίνακές της ξαναχρησιμοποιούνται από ερώτημα σε ερώτημα)
+    private static final ThreadLocal<KnnSearch> KNN_SEARCH = ThreadLocal.withInitial(KnnSearch::new);
+
+    // Επίπεδα στα οποία έγινε ήδη forced reinsert κατά την τρέχουσα εισαγωγή (R*: μία φορά ανά επίπεδο)
+    private final BitSet reinsertedLevels = new BitSet();
+    private long inserts;               // εισαγωγές από το τελευταίο resetInsertStats()
+    private long splits;
+    private long reinserts;
+    private long reinsertedEntries;
 
     /**
      * Κατασκευαστής RStarTree.
@@ -22,16 +58,233 @@ public class RStarTree {
      * @throws IOException σε περίπτωση I/O σφάλματος.
      */
     public RStarTree(int d, DataFile df, IndexFile idx) throws IOException {
+        this(d, df, idx, new BufferPool(idx));
+    }
+
+    /**
+     * Κατασκευαστής RStarTree με συγκεκριμένο buffer pool.
+     * Οι παράμετροι είναι οι προεπιλεγμένες του TreeConfig για τη σελίδα του idx.
+     *
+     * @param pool BufferPool πάνω από το idx, μέσω του οποίου περνούν όλες οι προσπελάσεις κόμβων.
+     */
+    public RStarTree(int d, DataFile df, IndexFile idx, BufferPool pool) throws IOException {
+        this(d, df, idx, pool, new TreeConfig(d, idx.getPageSize()));
+    }
+
+    /**
+     * Κατασκευαστής RStarTree με συγκεκριμένες παραμέτρους.
+     *
+     * @param config Παράμετροι του δέντρου· το pageSize πρέπει να είναι αυτό του idx.
+     */
+    public RStarTree(int d, DataFile df, IndexFile idx, TreeConfig config) throws IOException {
+        this(d, df, idx, new BufferPool(idx), config);
+    }
+
+    public RStarTree(int d, DataFile df, IndexFile idx, BufferPool pool, TreeConfig config) throws IOException {
         this.DIM = d;
         this.dataFile = df;
         this.indexFile = idx;
+        this.bufferPool = pool;
+        this.config = config;
+        this.M = config.getMaxEntries();
+        this.m = config.getMinEntries();
+        indexFile.setConfig(config);
 
         // Δημιουργούμε νέο κενό root (leaf επίπεδο 0) και τον γράφουμε στο IndexFile
         Node newRoot = new Node(0, true);
-        int rootPage = indexFile.writeNode(-1, newRoot);
+        int rootPage = bufferPool.writeNode(-1, newRoot);
         newRoot.setPageId(rootPage);
-        newRoot.setParentPage(-1);
-        this.root = newRoot;
+        setRoot(newRoot);
+        commitOperation();
+    }
+
+    /**
+     * Άνοιγμα υπάρχοντος δέντρου: διαβάζει τη ρίζα από το superblock του IndexFile
+     * (O(1)), χωρίς να ξαναχτίζει τίποτα.
+     *
+     * @param df  Το DataFile στο οποίο δείχνουν οι RecordPointer του index.
+     * @param idx IndexFile που ανοίχτηκε με IndexFile.open(...) ή IndexFile.openReadOnly(...).
+     */
+    public static RStarTree open(DataFile df, IndexFile idx) throws IOException {
+        return new RStarTree(df, idx, new BufferPool(idx));
+    }
+
+    /** Όπως το open(df, idx), με συγκεκριμένο buffer pool. */
+    public static RStarTree open(DataFile df, IndexFile idx, BufferPool pool) throws IOException {
+        return new RStarTree(df, idx, pool);
+    }
+
+    private RStarTree(DataFile df, IndexFile idx, BufferPool pool) throws IOException {
+        this.DIM = idx.getDimension();
+        this.dataFile = df;
+        this.indexFile = idx;
+        this.bufferPool = pool;
+        try {
+            this.config = idx.getConfig();
+        } catch (IllegalArgumentException ex) {
+            throw new IOException("RStarTree.open: άκυρες παράμετροι στο superblock: " + ex.getMessage());
+        }
+        this.M = config.getMaxEntries();
+        this.m = config.getMinEntries();
+        Node r = bufferPool.readNode(idx.getRootPage());
+        if (r == null) {
+            throw new IOException("RStarTree.open: άκυρη σελίδα ρίζας " + idx.getRootPage());
+        }
+        this.entryCount = idx.getEntryCount();
+        setRoot(r);
+    }
+
+    /** @return Πλήθος σημείων που έχουν εισαχθεί στο δέντρο. */
+    public long size() {
+        return entryCount;
+    }
+
+    /** @return Ύψος του δέντρου (1 = μόνο η ρίζα-φύλλο). */
+    public int getHeight() {
+        Node r = root;
+        return (r == null) ? 0 : r.getLevel() + 1;
+    }
+
+    /** @return Η διάσταση των σημείων του δέντρου. */
+    public int getDimension() {
+        return DIM;
+    }
+
+    /** @return Μέγιστος αριθμός entries ανά κόμβο (M). */
+    public int getMaxEntries() {
+        return M;
+    }
+
+    /** @return Ελάχιστος αριθμός entries ανά κόμβο (m). */
+    public int getMinEntries() {
+        return m;
+    }
+
+    /** Μηδενίζει τους μετρητές εισαγωγών, splits και reinserts. */
+    public void resetInsertStats() {
+        inserts = splits = reinserts = reinsertedEntries = 0;
+    }
+
+    /** @return Εισαγωγές (insertPointer) από το τελευταίο resetInsertStats(). */
+    public long getInserts() {
+        return inserts;
+    }
+
+    /** @return Splits κόμβων από το τελευταίο resetInsertStats(). */
+    public long getSplits() {
+        return splits;
+    }
+
+    /** @return Forced reinserts (ένα ανά κόμβο που υπερχείλισε) από το τελευταίο resetInsertStats(). */
+    public long getReinserts() {
+        return reinserts;
+    }
+
+    /** @return Πόσα entries επανεισήχθησαν συνολικά από τα forced reinserts. */
+    public long getReinsertedEntries() {
+        return reinsertedEntries;
+    }
+
+    /** @return Πόσες φορές ένα ερώτημα ξανάτρεξε επειδή ο writer άλλαξε σελίδα που διάβασε. */
+    public long getOptimisticRetries() {
+        return optimisticRetries.sum();
+    }
+
+    /** @return Οι παράμετροι του δέντρου (αποθηκεύονται στο superblock του index). */
+    public TreeConfig getConfig() {
+        return config;
+    }
+
+    DataFile getDataFile() {
+        return dataFile;
+    }
+
+    IndexFile getIndexFile() {
+        return indexFile;
+    }
+
+    /**
+     * Εγκαθιστά ως ρίζα έναν κόμβο που κατασκευάστηκε εκτός δέντρου
+     * (π.χ. από τον ExternalBulkLoader) και ολοκληρώνει τη λειτουργία.
+     */
+    void installRoot(Node newRoot, long count) throws IOException {
+        writeLock.lock();
+        try {
+            checkWritable();
+            // Όπως στο bulkLoad: πρώτα η νέα ρίζα, μετά οι σελίδες του παλιού δέντρου στη free list
+            int oldRoot = root.getPageId();
+            setRoot(newRoot);
+            freeSubtree(oldRoot);
+            entryCount = count;
+            commitOperation();
+        } finally {
+            releaseLatches();
+            writeLock.unlock();
+        }
+    }
+
+    /** Το lock του writer, για όσους γράφουν στα αρχεία του δέντρου εκτός RStarTree (ExternalBulkLoader). */
+    ReentrantLock getWriteLock() {
+        return writeLock;
+    }
+
+    /** @return Το buffer pool του δέντρου (για στατιστικά hits/misses/evictions). */
+    public BufferPool getBufferPool() {
+        return bufferPool;
+    }
+
+    /**
+     * Γράφει στο IndexFile όλους τους κόμβους που έχουν αλλάξει στη μνήμη
+     * και τους κάνει durable, ανεξάρτητα από την πολιτική του IndexFile.
+     */
+    public void flush() throws IOException {
+        writeLock.lock();
+        try {
+            indexFile.setTreeState(root.getPageId(), getHeight(), entryCount);
+            bufferPool.flush();
+            indexFile.flush();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Κλείνει το δέντρο: γράφει όσους κόμβους κρατάει το buffer pool (όπως το flush())
+     * και μετά κλείνει το IndexFile. Το IndexFile.close() μόνο του δεν βλέπει τις dirty
+     * σελίδες του pool, οπότε ένα index που γράφτηκε κλείνει από εδώ. Το DataFile το
+     * κλείνει όποιος το άνοιξε.
+     */
+    @Override
+    public void close() throws IOException {
+        writeLock.lock();
+        try {
+            flush();
+            indexFile.close();
+        } finally {
+            if (parallelPool != null) {
+                parallelPool.shutdown();
+            }
+            writeLock.unlock();
+        }
+    }
+
+    /** Οι μεταβολές δεν επιτρέπονται σε δέντρο πάνω από index ανοιχτό μόνο για ανάγνωση. */
+    void checkWritable() throws IOException {
+        if (indexFile.isReadOnly()) {
+            throw new IOException("RStarTree: το index έχει ανοιχτεί μόνο για ανάγνωση");
+        }
+    }
+
+    /**
+     * Τέλος μιας λειτουργίας εγγραφής: αν η πολιτική durability του IndexFile
+     * το απαιτεί, γράφονται οι dirty σελίδες και γίνεται ένα force για όλες μαζί.
+     */
+    private void commitOperation() throws IOException {
+        indexFile.setTreeState(root.getPageId(), getHeight(), entryCount);
+        if (indexFile.isSyncDue()) {
+            bufferPool.flush();
+            indexFile.commit();
+        }
     }
 
     // Εισαγωγή pointer χωρίς DataFile (insertPointer).
@@ -40,374 +293,851 @@ public class RStarTree {
      * Δεν γράφει νέο Record στο DataFile—χρησιμοποιείται για το bulkLoad.
      */
     public void insertPointer(RecordPointer rp, double[] coords) throws IOException {
-        MBR singleMBR = new MBR(coords, coords);
-        Entry newEntry = new Entry(singleMBR, rp);
-
-        Node leaf = chooseLeaf(root, newEntry);
-        leaf.addEntry(newEntry);
-        leaf.recomputeMBRUpward();
-        indexFile.writeNode(leaf.getPageId(), leaf);
-        adjustTree(leaf);
-
-        if (leaf.getEntries().size() > M) {
-            handleOverflow(leaf);
+        writeLock.lock();
+        try {
+            checkWritable();
+            MBR singleMBR = new MBR(coords, coords);
+            Entry newEntry = new Entry(singleMBR, rp);
+            reinsertedLevels.clear();
+
+            insertEntry(newEntry, 0);
+            entryCount++;
+            inserts++;
+            commitOperation();
+        } finally {
+            releaseLatches();
+            writeLock.unlock();
         }
+    }
 
-        if (root.getParentPage() >= 0) {
-            root = indexFile.readNode(root.getParentPage());
+    /**
+     * ChooseSubtree του R*-tree: κατεβαίνει από τη ρίζα μέχρι τον κόμβο επιπέδου targetLevel
+     * όπου θα μπει ένα entry με MBR box. Η επιλογή σε κάθε επίπεδο γίνεται μόνο από τα MBR
+     * των entries του γονέα, οπότε διαβάζεται ακριβώς ένας κόμβος ανά επίπεδο.
+     *
+     * @return Το μονοπάτι ρίζα → κόμβος-στόχος (path.get(0) είναι η ρίζα).
+     */
+    private List<Node> chooseSubtree(MBR box, int targetLevel) throws IOException {
+        List<Node> path = new ArrayList<>(root.getLevel() + 1);
+        Node N = root;
+        path.add(N);
+        while (N.getLevel() > targetLevel) {
+            List<Entry> entries = N.getEntries();
+            if (entries.isEmpty()) {
+                throw new IllegalStateException(
+                        "chooseSubtree: Κενός εσωτερικός κόμβος σε επίπεδο " + N.getLevel());
+            }
+            Entry best = (N.getLevel() == targetLevel + 1)
+                    ? leastOverlapEnlargement(entries, box)
+                    : leastAreaEnlargement(entries, box);
+            N = bufferPool.readNode(best.getChildPage());
+            path.add(N);
         }
+        return path;
     }
 
-    // Επιλογή κατάλληλου φύλλου (chooseLeaf).
-    private Node chooseLeaf(Node curr, Entry e) throws IOException {
-        if (curr.isLeaf()) {
-            return curr;
+    /**
+     * Διαδίδει προς τα πάνω, κατά μήκος του μονοπατιού, το MBR (και, με aggregate counts,
+     * το πλήθος) του path.get(depth) που μόλις άλλαξε. Σταματάει στον πρώτο πρόγονο του
+     * οποίου το entry δεν αλλάζει.
+     */
+    private void adjustPath(List<Node> path, int depth) throws IOException {
+        boolean counts = config.hasAggregateCounts();
+        for (int d = depth; d > 0; d--) {
+            Node child = path.get(d);
+            Node parent = path.get(d - 1);
+            Entry e = entryFor(parent, child.getPageId());
+            int count = counts ? child.subtreeCount() : e.getCount();
+            if (e.getMBR().equals(child.getMBR()) && e.getCount() == count) {
+                return;
+            }
+            latch(parent);
+            e.setMBR(child.getMBR());
+            e.setCount(count);
+            parent.recomputeMBR();
+            bufferPool.writeNode(parent.getPageId(), parent);
         }
-        Entry best = null;
-        double bestInc  = Double.POSITIVE_INFINITY;
-        double bestArea = Double.POSITIVE_INFINITY;
+    }
 
-        for (Entry c : curr.getEntries()) {
-            if (!c.isInternalEntry()) continue;
-            Node child = indexFile.readNode(c.getChildPage());
-            // Βεβαιωνόμαστε ότι ο child έχει σωστό parentPage
-            if (child.getParentPage() != curr.getPageId()) {
-                child.setParentPage(curr.getPageId());
-                indexFile.writeNode(child.getPageId(), child);
+    /** @return Το entry του parent που δείχνει στη σελίδα childPage. */
+    private static Entry entryFor(Node parent, int childPage) {
+        for (Entry e : parent.getEntries()) {
+            if (e.getChildPage() == childPage) {
+                return e;
             }
+        }
+        throw new IllegalStateException("Ο κόμβος " + parent.getPageId()
+                + " δεν έχει entry για τη σελίδα " + childPage);
+    }
 
-            double inc  = c.getMBR().enlargement(e.getMBR());
+    /** Ελάχιστη διεύρυνση εμβαδού· ισοπαλία → μικρότερο εμβαδόν. */
+    private static Entry leastAreaEnlargement(List<Entry> entries, MBR box) {
+        Entry best = null;
+        double bestInc = Double.POSITIVE_INFINITY;
+        double bestArea = Double.POSITIVE_INFINITY;
+        for (Entry c : entries) {
             double area = c.getMBR().area();
-            int childSz = child.getEntries().size();
-
-            Node bestChildNode = (best == null
-                    ? null
-                    : indexFile.readNode(best.getChildPage()));
-            int bestChildSz = (bestChildNode == null
-                    ? Integer.MAX_VALUE
-                    : bestChildNode.getEntries().size());
-
-            if (inc < bestInc
-                    || (inc == bestInc && area < bestArea)
-                    || (inc == bestInc && area == bestArea && childSz < bestChildSz)) {
+            double inc = MBR.union(c.getMBR(), box).area() - area;
+            if (inc < bestInc || (inc == bestInc && area < bestArea)) {
                 best = c;
                 bestInc = inc;
                 bestArea = area;
             }
         }
-
-        if (best == null) {
-            throw new IllegalStateException(
-                    "chooseLeaf: Δεν βρέθηκε internal entry σε κόμβο επιπέδου " + curr.getLevel());
-        }
-        return chooseLeaf(indexFile.readNode(best.getChildPage()), e);
+        return best;
     }
 
-    // Διαχείριση overflow: reinsert ή split (handleOverflow).
-    private void handleOverflow(Node N) throws IOException {
-        if (N.getPageId() == root.getPageId()) {
-            // Αν είναι root, απλώς split
-            splitNode(N);
-            return;
+    /**
+     * Ελάχιστη διεύρυνση επικάλυψης με τα αδέλφια· ισοπαλία → ελάχιστη διεύρυνση
+     * εμβαδού → μικρότερο εμβαδόν. Nearly-minimum overlap: εξετάζονται μόνο τα
+     * OVERLAP_CANDIDATES entries με τη μικρότερη διεύρυνση εμβαδού.
+     */
+    private static Entry leastOverlapEnlargement(List<Entry> entries, MBR box) {
+        int n = entries.size();
+        double[] areaInc = new double[n];
+        double[] area = new double[n];
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            area[i] = entries.get(i).getMBR().area();
+            areaInc[i] = MBR.union(entries.get(i).getMBR(), box).area() - area[i];
+            order[i] = i;
         }
-        if (N.getLevel() > 0 && !hasBeenReinserted(N)) {
-            reinsert(N);
-        } else {
-            splitNode(N);
+        Arrays.sort(order, (a, b) -> areaInc[a] != areaInc[b]
+                ? Double.compare(areaInc[a], areaInc[b])
+                : Double.compare(area[a], area[b]));
+        if (areaInc[order[0]] == 0.0) {
+            // Το box χωράει ήδη: μηδενική διεύρυνση επικάλυψης, δεν υπάρχει καλύτερη επιλογή
+            return entries.get(order[0]);
+        }
+        int candidates = Math.min(n, OVERLAP_CANDIDATES);
+
+        int best = -1;
+        double bestOverlap = Double.POSITIVE_INFINITY;
+        for (int c = 0; c < candidates; c++) {
+            int k = order[c];
+            MBR current = entries.get(k).getMBR();
+            MBR enlarged = MBR.union(current, box);
+            double overlapInc = 0.0;
+            for (int j = 0; j < n; j++) {
+                if (j == k) continue;
+                MBR other = entries.get(j).getMBR();
+                overlapInc += enlarged.overlapArea(other) - current.overlapArea(other);
+            }
+            if (best < 0 || overlapInc < bestOverlap
+                    || (overlapInc == bestOverlap && (areaInc[k] < areaInc[best]
+                    || (areaInc[k] == areaInc[best] && area[k] < area[best])))) {
+                best = k;
+                bestOverlap = overlapInc;
+            }
         }
+        return entries.get(best);
     }
 
-    private boolean hasBeenReinserted(Node N) {
-        // Αν θέλετε να αποφύγετε διπλή reinsert, βάλτε flag στο Node.
-        return false;
+    /**
+     * OverflowTreatment του R*-tree: η πρώτη υπερχείλιση σε κάθε επίπεδο (εκτός της ρίζας)
+     * κατά τη διάρκεια μιας εισαγωγής λύνεται με forced reinsert, οι επόμενες με split.
+     */
+    private void handleOverflow(List<Node> path, int depth) throws IOException {
+        Node N = path.get(depth);
+        int p = (int) Math.floor(config.getReinsertFraction() * M);
+        if (depth == 0 || p == 0 || reinsertedLevels.get(N.getLevel())) {
+            splitNode(path, depth);
+            return;
+        }
+        reinsertedLevels.set(N.getLevel());
+        reinsert(path, depth, p);
     }
 
-    // Reinsert: αφαίρεση p entries και «συμπλήρωσή» τους από τη ρίζα
-    private void reinsert(Node N) throws IOException {
-        int p = (int) Math.floor(0.3 * M);
-        double[] centroid = new double[DIM];
-        Arrays.fill(centroid, 0.0);
-
-        // Υπολογισμός κέντρου βάρους όλων των centroids των entry‐MBR
-        for (Entry e : N.getEntries()) {
-            double[] mn = e.getMBR().getMin();
-            double[] mx = e.getMBR().getMax();
+    /**
+     * Forced reinsert: αφαιρεί τα p entries του N που απέχουν περισσότερο από το κέντρο
+     * του MBR του και τα ξαναεισάγει στο ίδιο επίπεδο, με τη σειρά του ReinsertOrder.
+     */
+    private void reinsert(List<Node> path, int depth, int p) throws IOException {
+        Node N = path.get(depth);
+        latch(N);
+        List<Entry> entries = N.getEntries();
+        int n = entries.size();
+        double[] mn = N.getMBR().getMin();
+        double[] mx = N.getMBR().getMax();
+        double[] dist = new double[n];
+        for (int j = 0; j < n; j++) {
+            MBR b = entries.get(j).getMBR();
+            double sum = 0.0;
             for (int i = 0; i < DIM; i++) {
-                centroid[i] += (mn[i] + mx[i]) / 2.0;
+                double diff = (b.getMin()[i] + b.getMax()[i]) / 2.0 - (mn[i] + mx[i]) / 2.0;
+                sum += diff * diff;
             }
+            dist[j] = sum;
         }
-        for (int i = 0; i < DIM; i++) {
-            centroid[i] /= N.getEntries().size();
+        // Ταξινόμηση κατά φθίνουσα απόσταση από το κέντρο
+        Integer[] order = new Integer[n];
+        for (int j = 0; j < n; j++) order[j] = j;
+        Arrays.sort(order, (a, b) -> Double.compare(dist[b], dist[a]));
+
+        List<Entry> toReinsert = new ArrayList<>(p);
+        List<Entry> kept = new ArrayList<>(n - p);
+        for (int j = 0; j < n; j++) {
+            (j < p ? toReinsert : kept).add(entries.get(order[j]));
         }
+        if (config.getReinsertOrder() == ReinsertOrder.CLOSE) {
+            Collections.reverse(toReinsert);
+        }
+        entries.clear();
+        entries.addAll(kept);
+        N.recomputeMBR();
+        bufferPool.writeNode(N.getPageId(), N);
+        adjustPath(path, depth);
+        reinserts++;
+        reinsertedEntries += p;
+
+        // Επανεισάγουμε από τη ρίζα, στο ίδιο επίπεδο με τον N
+        for (Entry e : toReinsert) {
+            insertEntry(e, N.getLevel());
+        }
+    }
 
-        // Ταξινόμηση κατά απόσταση από centroid (πρώτα οι πιο απομακρυσμένες)
-        List<Entry> sorted = new ArrayList<>(N.getEntries());
-        sorted.sort((a, b) -> {
-            double da = 0, db = 0;
-            double[] ca = new double[DIM], cb = new double[DIM];
-            for (int i = 0; i < DIM; i++) {
-                ca[i] = (a.getMBR().getMin()[i] + a.getMBR().getMax()[i]) / 2.0;
-                cb[i] = (b.getMBR().getMin()[i] + b.getMBR().getMax()[i]) / 2.0;
-                da += Math.pow(ca[i] - centroid[i], 2);
-                db += Math.pow(cb[i] - centroid[i], 2);
-            }
-            return Double.compare(db, da);
-        });
-
-        List<Entry> toReinsert = new ArrayList<>(sorted.subList(0, p));
-        N.getEntries().removeAll(toReinsert);
-        N.recomputeMBRUpward();
-        indexFile.writeNode(N.getPageId(), N);
-        adjustTree(N);
+    /**
+     * Bulk-load με STR πακετάρισμα και πλήρη κόμβους (fill factor 1.0).
+     */
+    public void bulkLoad(List<Record> records) throws IOException {
+        bulkLoad(records, BulkLoadStrategy.STR, DEFAULT_FILL_FACTOR);
+    }
 
-        // Επανεισάγουμε σταδιακά από τη ρίζα
-        for (Entry e : toReinsert) {
-            if (e.isLeafEntry()) {
-                insertEntry(root, e, 0);
-            } else {
-                Node child = indexFile.readNode(e.getChildPage());
-                insertEntry(root, e, child.getLevel());
+    /**
+     * Bulk-load: bottom-up κατασκευή χωρίς πολλαπλά overflows.
+     * Τα records γράφονται στο DataFile με τη σειρά των φύλλων, ώστε γειτονικά
+     * σημεία να καταλήγουν και σε γειτονικά data-blocks.
+     *
+     * @param records    Τα records προς φόρτωση (η λίστα δεν τροποποιείται).
+     * @param strategy   Στρατηγική πακεταρίσματος (X_SORT, STR, HILBERT).
+     * @param fillFactor Ποσοστό του M που γεμίζει κάθε κόμβος, στο (0, 1]· ποτέ κάτω από m.
+     */
+    public void bulkLoad(List<Record> records, BulkLoadStrategy strategy, double fillFactor) throws IOException {
+        writeLock.lock();
+        try {
+            if (fillFactor <= 0.0 || fillFactor > 1.0) {
+                throw new IllegalArgumentException("bulkLoad: fillFactor εκτός (0, 1]: " + fillFactor);
             }
+            checkWritable();
+            if (records.isEmpty()) {
+                return;
+            }
+            // Το νέο δέντρο χτίζεται σε νέες σελίδες· το παλιό μένει ρίζα μέχρι να ολοκληρωθεί
+            List<Integer> built = new ArrayList<>();
+            Node newRoot;
+            try {
+                newRoot = buildPacked(records, strategy, fillFactor, built);
+            } catch (IOException | RuntimeException e) {
+                for (int page : built) {
+                    bufferPool.freePage(page);
+                }
+                throw e;
+            }
+            // Το bulkLoad αντικαθιστά το δέντρο: οι σελίδες του παλιού πάνε στη free list
+            int oldRoot = root.getPageId();
+            setRoot(newRoot);
+            freeSubtree(oldRoot);
+            entryCount = records.size();
+            commitOperation();
+        } finally {
+            releaseLatches();
+            writeLock.unlock();
         }
     }
 
-    // Bulk-load: bottom-up κατασκευή χωρίς πολλαπλά overflows
-    public void bulkLoad(List<Record> records) throws IOException {
-        // Ταξινόμηση κατά πρώτη συντεταγμένη
-        records.sort(Comparator.comparingDouble(r -> r.getCoords()[0]));
+    /**
+     * Κατασκευάζει bottom-up το δέντρο του bulkLoad σε νέες σελίδες (που καταγράφονται στο built)
+     * και επιστρέφει τη ρίζα του.
+     */
+    private Node buildPacked(List<Record> records, BulkLoadStrategy strategy, double fillFactor,
+                             List<Integer> built) throws IOException {
+        int capacity = Math.max(m, Math.min(M, (int) Math.floor(fillFactor * M)));
 
-        // 1) Φτιάχνουμε όλα τα leaf entries (γραμμικά στο DataFile + MBR)
-        List<Entry> leafEntries = new ArrayList<>();
+        // Συνολικά όρια του συνόλου δεδομένων (για την κανονικοποίηση Hilbert)· ένα λάθος record
+        // απορρίπτεται εδώ, πριν γραφτεί οτιδήποτε στο DataFile
+        MBR bounds = null;
         for (Record rec : records) {
-            RecordPointer rp = dataFile.insertRecord(rec);
-            MBR mbr = new MBR(rec.getCoords(), rec.getCoords());
-            leafEntries.add(new Entry(mbr, rp));
+            if (rec.getCoords() == null || rec.getCoords().length != DIM) {
+                throw new IllegalArgumentException("bulkLoad: το record " + rec.getId()
+                        + " δεν έχει " + DIM + " συντεταγμένες");
+            }
+            MBR p = new MBR(rec.getCoords(), rec.getCoords());
+            bounds = (bounds == null) ? p : MBR.union(bounds, p);
         }
 
-        // 2) Πακετάρουμε σε leaf nodes των M entries
-        List<Node> leaves = new ArrayList<>();
-        for (int i = 0; i < leafEntries.size(); i += M) {
-            int end = Math.min(i + M, leafEntries.size());
+        // 1) Φύλλα: πακετάρισμα των records και εγγραφή τους στο DataFile με τη σειρά των φύλλων
+        List<Node> currentLevel = new ArrayList<>();
+        for (List<Record> group : pack(records, r -> new MBR(r.getCoords(), r.getCoords()),
+                strategy, capacity, bounds)) {
             Node leaf = new Node(0, true);
-            for (int j = i; j < end; j++) {
-                leaf.addEntry(leafEntries.get(j));
+            for (Record rec : group) {
+                RecordPointer rp = dataFile.insertRecord(rec);
+                leaf.addEntry(new Entry(new MBR(rec.getCoords(), rec.getCoords()), rp));
             }
-            leaf.recomputeMBRUpward();
-            int pageLeaf = indexFile.writeNode(-1, leaf);
-            leaf.setPageId(pageLeaf);
-            leaf.setParentPage(-1);
-            leaves.add(leaf);
+            built.add(bufferPool.writeNode(-1, leaf));
+            currentLevel.add(leaf);
         }
 
-        // 3) Φτιάχνουμε τα εσωτερικά επίπεδα μέχρι τη ρίζα
+        // 2) Εσωτερικά επίπεδα μέχρι τη ρίζα, με την ίδια στρατηγική πάνω στα MBR των παιδιών
         int level = 1;
-        List<Node> currentLevel = leaves;
         while (currentLevel.size() > 1) {
             List<Node> nextLevel = new ArrayList<>();
-            for (int i = 0; i < currentLevel.size(); i += M) {
-                int end = Math.min(i + M, currentLevel.size());
+            for (List<Node> group : pack(currentLevel, Node::getMBR, strategy, capacity, bounds)) {
                 Node parent = new Node(level, false);
-                for (int j = i; j < end; j++) {
-                    Node child = currentLevel.get(j);
-                    parent.addEntry(new Entry(child.getMBR(), child.getPageId()));
+                for (Node child : group) {
+                    parent.addEntry(Entry.forChild(child));
                 }
-                parent.recomputeMBRUpward();
-                int pageParent = indexFile.writeNode(-1, parent);
-                parent.setPageId(pageParent);
-                parent.setParentPage(-1);
+                built.add(bufferPool.writeNode(-1, parent));
                 nextLevel.add(parent);
             }
             currentLevel = nextLevel;
             level++;
         }
-        root = currentLevel.get(0);
+        return currentLevel.get(0);
     }
 
-    // Εισαγωγή ενός Entry σε targetLevel (για reinsert ή bulkLoad)
-    private void insertEntry(Node R, Entry E, int targetLevel) throws IOException {
-        if (R.getLevel() == targetLevel) {
-            R.addEntry(E);
-            R.recomputeMBRUpward();
-            indexFile.writeNode(R.getPageId(), R);
-            adjustTree(R);
-            if (R.getEntries().size() > M) {
-                handleOverflow(R);
+    /** Επιστρέφει στη free list όλες τις σελίδες του υποδέντρου με ρίζα pageId. */
+    private void freeSubtree(int pageId) throws IOException {
+        Node n = bufferPool.readNode(pageId);
+        if (n == null) return;
+        if (!n.isLeaf()) {
+            for (Entry e : n.getEntries()) {
+                if (e.isInternalEntry()) {
+                    freeSubtree(e.getChildPage());
+                }
             }
-            return;
         }
-        Entry best = null;
-        double bestInc  = Double.POSITIVE_INFINITY;
-        double bestArea = Double.POSITIVE_INFINITY;
+        bufferPool.freePage(pageId);
+    }
 
-        for (Entry c : R.getEntries()) {
-            if (!c.isInternalEntry()) continue;
-            Node child = indexFile.readNode(c.getChildPage());
-            if (child.getParentPage() != R.getPageId()) {
-                child.setParentPage(R.getPageId());
-                indexFile.writeNode(child.getPageId(), child);
+    /**
+     * Χωρίζει τα items σε ομάδες (μελλοντικούς κόμβους) των ≤ capacity στοιχείων,
+     * σύμφωνα με τη στρατηγική πακεταρίσματος.
+     */
+    private <T> List<List<T>> pack(List<T> items, Function<T, MBR> boxOf,
+                                   BulkLoadStrategy strategy, int capacity, MBR bounds) {
+        int n = items.size();
+        double[][] centers = new double[n][DIM];
+        double[] firstMin = new double[n];
+        for (int i = 0; i < n; i++) {
+            MBR b = boxOf.apply(items.get(i));
+            for (int d = 0; d < DIM; d++) {
+                centers[i][d] = (b.getMin()[d] + b.getMax()[d]) / 2.0;
             }
+            firstMin[i] = b.getMin()[0];
+        }
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) order[i] = i;
+
+        List<int[]> ranges = new ArrayList<>();
+        switch (strategy) {
+            case X_SORT:
+                Arrays.sort(order, Comparator.comparingDouble(i -> firstMin[i]));
+                chunk(0, n, capacity, m, ranges);
+                break;
+            case HILBERT:
+                long[] keys = new long[n];
+                for (int i = 0; i < n; i++) {
+                    keys[i] = HilbertCurve.key(centers[i], bounds.getMin(), bounds.getMax());
+                }
+                Arrays.sort(order, Comparator.comparingLong(i -> keys[i]));
+                chunk(0, n, capacity, m, ranges);
+                break;
+            case STR:
+                strTile(order, 0, n, 0, centers, capacity, ranges);
+                break;
+        }
 
-            double inc  = c.getMBR().enlargement(E.getMBR());
-            double area = c.getMBR().area();
-            int childSz = child.getEntries().size();
-
-            Node bestChildNode = (best == null
-                    ? null
-                    : indexFile.readNode(best.getChildPage()));
-            int bestChildSz = (bestChildNode == null
-                    ? Integer.MAX_VALUE
-                    : bestChildNode.getEntries().size());
-
-            if (inc < bestInc
-                    || (inc == bestInc && area < bestArea)
-                    || (inc == bestInc && area == bestArea && childSz < bestChildSz)) {
-                best = c;
-                bestInc = inc;
-                bestArea = area;
+        List<List<T>> groups = new ArrayList<>(ranges.size());
+        for (int[] r : ranges) {
+            List<T> g = new ArrayList<>(r[1] - r[0]);
+            for (int i = r[0]; i < r[1]; i++) {
+                g.add(items.get(order[i]));
             }
+            groups.add(g);
+        }
+        return groups;
+    }
+
+    /**
+     * Sort-Tile-Recursive: ταξινομεί το [from, to) κατά τη διάσταση dim, το κόβει σε
+     * S = ⌈P^(1/(DIM-dim))⌉ slabs (P = πλήθος κόμβων) και συνεχίζει αναδρομικά στην επόμενη διάσταση.
+     */
+    private void strTile(Integer[] order, int from, int to, int dim, double[][] centers,
+                         int capacity, List<int[]> ranges) {
+        Arrays.sort(order, from, to, Comparator.comparingDouble(i -> centers[i][dim]));
+        int count = to - from;
+        if (dim == DIM - 1) {
+            chunk(from, to, capacity, m, ranges);
+            return;
         }
+        int pages = packedNodes(count, capacity, m);
+        int slabs = (int) Math.ceil(Math.pow(pages, 1.0 / (DIM - dim)));
+        // Slabs σχεδόν ίσου μεγέθους και με ≥ m σημεία, ώστε κάθε slab να δίνει κόμβους με ≥ m entries
+        List<int[]> slabRanges = new ArrayList<>();
+        chunk(from, to, (count + slabs - 1) / slabs, m, slabRanges);
+        for (int[] slab : slabRanges) {
+            strTile(order, slab[0], slab[1], dim + 1, centers, capacity, ranges);
+        }
+    }
 
-        if (best == null) {
-            throw new IllegalStateException(
-                    "insertEntry: Δεν βρέθηκε internal entry σε κόμβο επιπέδου " + R.getLevel());
+    /**
+     * Κόβει το [from, to) σε packedNodes(count, capacity, min) ομάδες σχεδόν ίσου μεγέθους,
+     * ώστε να μη μένει ένας σχεδόν άδειος κόμβος στο τέλος.
+     */
+    private static void chunk(int from, int to, int capacity, int min, List<int[]> ranges) {
+        int count = to - from;
+        if (count == 0) return;
+        int groups = packedNodes(count, capacity, min);
+        int base = count / groups;
+        int extra = count % groups;
+        int start = from;
+        for (int g = 0; g < groups; g++) {
+            int size = base + (g < extra ? 1 : 0);
+            ranges.add(new int[] { start, start + size });
+            start += size;
         }
-        insertEntry(indexFile.readNode(best.getChildPage()), E, targetLevel);
     }
 
-    // Split κόμβου N σε N1, N2 και ενημέρωση parent (ή δημιουργία νέου root).
-    private void splitNode(Node N) throws IOException {
+    /**
+     * Σε πόσους κόμβους πακετάρονται count entries: ⌈count/capacity⌉, εκτός αν τότε οι σχεδόν
+     * ίσες ομάδες θα είχαν λιγότερα από min entries· τότε ⌊count/min⌋ (με 2m - 1 ≤ M, καμία
+     * ομάδα δεν ξεπερνάει το M). Λιγότερα από min entries δίνουν έναν κόμβο, που είναι η ρίζα.
+     */
+    static int packedNodes(long count, int capacity, int min) {
+        long nodes = (count + capacity - 1) / capacity;
+        return (int) Math.max(1, Math.min(nodes, count / min));
+    }
+
+    // Εισαγωγή ενός Entry σε κόμβο επιπέδου targetLevel (0 = φύλλο· >0 για reinsert)
+    private void insertEntry(Entry E, int targetLevel) throws IOException {
+        List<Node> path = chooseSubtree(E.getMBR(), targetLevel);
+        int depth = path.size() - 1;
+        Node R = path.get(depth);
+        latch(R);
+        R.addEntry(E);
+        bufferPool.writeNode(R.getPageId(), R);
+        if (R.getEntries().size() > M) {
+            handleOverflow(path, depth);
+        } else {
+            adjustPath(path, depth);
+        }
+    }
+
+    /**
+     * Split του path.get(depth): ο κόμβος κρατάει την πρώτη ομάδα στη σελίδα του και
+     * η δεύτερη πάει σε νέα σελίδα, που προστίθεται στον γονέα (ή σε νέα ρίζα).
+     */
+    private void splitNode(List<Node> path, int depth) throws IOException {
+        splits++;
+        Node N = path.get(depth);
+        latch(N);
         SplitResult sr = chooseSplit(N);
 
-        Node N1 = new Node(N.getLevel(), N.isLeaf());
         Node N2 = new Node(N.getLevel(), N.isLeaf());
-        for (Entry e : sr.getGroup1()) {
-            N1.addEntry(e);
-        }
         for (Entry e : sr.getGroup2()) {
             N2.addEntry(e);
         }
-        N1.recomputeMBRUpward();
-        N2.recomputeMBRUpward();
+        N.getEntries().clear();
+        for (Entry e : sr.getGroup1()) {
+            N.addEntry(e);
+        }
+        N.recomputeMBR();
+        bufferPool.writeNode(N.getPageId(), N);
+        int pageN2 = bufferPool.writeNode(-1, N2);
+        // Οι νέες σελίδες (ίσως από τη free list) δημοσιεύονται κι αυτές στο τέλος της λειτουργίας
+        latch(N2);
 
         // Αν N είναι root -> δημιουργία νέας ρίζας
-        if (N.getPageId() == root.getPageId()) {
-            int pageN1 = indexFile.writeNode(-1, N1);
-            N1.setPageId(pageN1);
-            N1.setParentPage(-1);
-
-            int pageN2 = indexFile.writeNode(-1, N2);
-            N2.setPageId(pageN2);
-            N2.setParentPage(-1);
-
+        if (depth == 0) {
             Node newRoot = new Node(N.getLevel() + 1, false);
-            newRoot.addEntry(new Entry(N1.getMBR(), pageN1));
-            newRoot.addEntry(new Entry(N2.getMBR(), pageN2));
-            newRoot.recomputeMBRUpward();
-            int newRootPage = indexFile.writeNode(-1, newRoot);
-            newRoot.setPageId(newRootPage);
-            newRoot.setParentPage(-1);
-            root = newRoot;
+            newRoot.addEntry(Entry.forChild(N));
+            newRoot.addEntry(Entry.forChild(N2));
+            bufferPool.writeNode(-1, newRoot);
+            latch(newRoot);
+            setRoot(newRoot);
             return;
         }
 
-        // Αν N δεν είναι root
-        int parentPage = N.getParentPage();
-        if (parentPage < 0) {
-            throw new IllegalStateException(
-                    "splitNode: Καλείσαι να σπάσεις κόμβο με parentPage = -1, αλλά δεν είσαι root.");
+        // Ενημερώνουμε το entry του N στον γονέα και προσθέτουμε τον N2
+        Node parent = path.get(depth - 1);
+        latch(parent);
+        Entry toN = entryFor(parent, N.getPageId());
+        toN.setMBR(N.getMBR());
+        toN.setCount(N.subtreeCount());
+        parent.addEntry(Entry.forChild(N2));
+        parent.recomputeMBR();
+        bufferPool.writeNode(parent.getPageId(), parent);
+
+        // Αν ο parent υπερχειλίσει, OverflowTreatment και στο επίπεδό του
+        if (parent.getEntries().size() > M) {
+            handleOverflow(path, depth - 1);
+        } else {
+            adjustPath(path, depth - 1);
         }
-        Node parent = indexFile.readNode(parentPage);
+    }
 
-        // Αφαιρούμε entry του N από parent
-        Entry toRemove = null;
-        for (Entry e : parent.getEntries()) {
-            if (e.isInternalEntry() && e.getChildPage() == N.getPageId()) {
-                toRemove = e;
-                break;
+    // Διαγραφή / ενημέρωση (delete, update) με CondenseTree.
+    /**
+     * Σβήνει το σημείο coords με pointer rp: αφαιρεί το entry από το φύλλο του,
+     * εφαρμόζει CondenseTree και κάνει tombstone το slot του στο DataFile.
+     *
+     * @return false αν δεν υπάρχει τέτοιο entry στο δέντρο.
+     */
+    public boolean delete(RecordPointer rp, double[] coords) throws IOException {
+        writeLock.lock();
+        try {
+            checkWritable();
+            List<Node> path = new ArrayList<>();
+            Entry e = findLeaf(root, new MBR(coords, coords), rp, path);
+            if (e == null) {
+                return false;
             }
+            // Πρώτα το DataFile: αν αποτύχει, το index μένει ανέγγιχτο
+            dataFile.deleteRecord(rp);
+            Node leaf = path.get(path.size() - 1);
+            latch(leaf);
+            leaf.getEntries().remove(e);
+            condenseTree(path);
+            entryCount--;
+            commitOperation();
+            return true;
+        } finally {
+            releaseLatches();
+            writeLock.unlock();
         }
-        if (toRemove != null) {
-            parent.getEntries().remove(toRemove);
+    }
+
+    /**
+     * Μετακινεί το σημείο με pointer rp από oldCoords σε newCoords, στο δέντρο και στο
+     * DataFile. Αν η νέα θέση είναι μέσα στο MBR του φύλλου, το entry αλλάζει επί τόπου και
+     * απλώς διαδίδεται προς τα πάνω η (πιθανή) σμίκρυνση· αλλιώς delete + insert.
+     *
+     * @return false αν δεν υπάρχει τέτοιο entry στο δέντρο.
+     */
+    public boolean update(RecordPointer rp, double[] oldCoords, double[] newCoords) throws IOException {
+        writeLock.lock();
+        try {
+            checkWritable();
+            List<Node> path = new ArrayList<>();
+            Entry e = findLeaf(root, new MBR(oldCoords, oldCoords), rp, path);
+            if (e == null) {
+                return false;
+            }
+            dataFile.updateCoords(rp, newCoords);
+            int depth = path.size() - 1;
+            Node leaf = path.get(depth);
+            latch(leaf);
+            MBR moved = new MBR(newCoords.clone(), newCoords.clone());
+            if (moved.isContainedIn(leaf.getMBR())) {
+                e.setMBR(moved);
+                leaf.recomputeMBR();
+                bufferPool.writeNode(leaf.getPageId(), leaf);
+                adjustPath(path, depth);
+            } else {
+                leaf.getEntries().remove(e);
+                condenseTree(path);
+                reinsertedLevels.clear();
+                insertEntry(new Entry(moved, rp), 0);
+            }
+            commitOperation();
+            return true;
+        } finally {
+            releaseLatches();
+            writeLock.unlock();
         }
+    }
 
-        // Εγκαθιστούμε N1, N2 ως παιδιά του parent
-        int pageN1 = indexFile.writeNode(-1, N1);
-        N1.setPageId(pageN1);
-        N1.setParentPage(parentPage);
+    /**
+     * FindLeaf: ψάχνει, σε όσα υποδέντρα περιέχουν το box, το leaf entry με pointer rp.
+     * Στο path μένει το μονοπάτι ρίζα → φύλλο του entry.
+     *
+     * @return Το entry ή null αν δεν βρέθηκε.
+     */
+    private Entry findLeaf(Node N, MBR box, RecordPointer rp, List<Node> path) throws IOException {
+        path.add(N);
+        if (N.isLeaf()) {
+            for (Entry e : N.getEntries()) {
+                RecordPointer p = e.getPointer();
+                if (p.getBlockId() == rp.getBlockId() && p.getSlotId() == rp.getSlotId()
+                        && e.getMBR().equals(box)) {
+                    return e;
+                }
+            }
+        } else {
+            for (Entry c : N.getEntries()) {
+                if (!box.isContainedIn(c.getMBR())) continue;
+                Entry found = findLeaf(bufferPool.readNode(c.getChildPage()), box, rp, path);
+                if (found != null) {
+                    return found;
+                }
+            }
+        }
+        path.remove(path.size() - 1);
+        return null;
+    }
 
-        int pageN2 = indexFile.writeNode(-1, N2);
-        N2.setPageId(pageN2);
-        N2.setParentPage(parentPage);
+    /**
+     * CondenseTree: ο κόμβος στο τέλος του path μόλις έχασε ένα entry. Από κάτω προς τα πάνω,
+     * κάθε κόμβος με λιγότερα από m entries αφαιρείται από τον γονέα του και τα entries του
+     * ξαναμπαίνουν στο επίπεδό τους· στους υπόλοιπους διορθώνεται το MBR στον γονέα.
+     * Στο τέλος, ρίζα εσωτερικός κόμβος με ένα μόνο παιδί αντικαθίσταται από το παιδί της.
+     */
+    private void condenseTree(List<Node> path) throws IOException {
+        int depth = path.size() - 1;
+        Node leaf = path.get(depth);
+        leaf.recomputeMBR();
+        List<Node> orphans = new ArrayList<>();
+
+        boolean counts = config.hasAggregateCounts();
+        boolean changed = true;
+        for (int d = depth; d > 0 && changed; d--) {
+            Node N = path.get(d);
+            Node parent = path.get(d - 1);
+            Entry e = entryFor(parent, N.getPageId());
+            latch(parent);
+            if (N.getEntries().size() < m) {
+                parent.getEntries().remove(e);
+                orphans.add(N);
+                bufferPool.freePage(N.getPageId());
+            } else {
+                if (d == depth) {
+                    bufferPool.writeNode(N.getPageId(), N);
+                }
+                // Αν ούτε το MBR του N άλλαξε, οι πρόγονοι μένουν ως έχουν
+                // (με aggregate counts το πλήθος άλλαξε πάντα)
+                changed = counts || !e.getMBR().equals(N.getMBR());
+                e.setMBR(N.getMBR());
+                if (counts) {
+                    e.setCount(N.subtreeCount());
+                }
+            }
+            parent.recomputeMBR();
+            if (changed) {
+                bufferPool.writeNode(parent.getPageId(), parent);
+            }
+        }
+        if (depth == 0) {
+            bufferPool.writeNode(leaf.getPageId(), leaf);
+        }
 
-        parent.addEntry(new Entry(N1.getMBR(), pageN1));
-        parent.addEntry(new Entry(N2.getMBR(), pageN2));
-        parent.recomputeMBRUpward();
-        indexFile.writeNode(parentPage, parent);
-        adjustTree(parent);
+        // Συρρίκνωση της ρίζας
+        while (!root.isLeaf() && root.getEntries().size() == 1) {
+            int oldRoot = root.getPageId();
+            setRoot(bufferPool.readNode(root.getEntries().get(0).getChildPage()));
+            bufferPool.freePage(oldRoot);
+        }
 
-        // Αν ο parent overflowάρει, κάνε split κι αυτόν
-        if (parent.getEntries().size() > M) {
-            splitNode(parent);
+        // Επανεισαγωγή των entries των κόμβων που αφαιρέθηκαν, από το ψηλότερο επίπεδο
+        for (int i = orphans.size() - 1; i >= 0; i--) {
+            Node orphan = orphans.get(i);
+            for (Entry e : orphan.getEntries()) {
+                reinsertedLevels.clear();
+                insertEntry(e, orphan.getLevel());
+            }
         }
     }
 
     /**
-     * Επιλογή optimal split (R*-tree: ελάχιστο sum of margins).
+     * Επιλογή split σύμφωνα με την πολιτική του config.
      * Επιστρέφει SplitResult με δύο λίστες entries.
      */
     private SplitResult chooseSplit(Node N) {
+        if (config.getSplitPolicy() == SplitPolicy.QUADRATIC) {
+            return quadraticSplit(N);
+        }
+        return rstarSplit(N);
+    }
+
+    /**
+     * Guttman quadratic split: σπόροι το ζεύγος με τη μεγαλύτερη «σπατάλη» εμβαδού,
+     * μετά κάθε φορά το entry με τη μεγαλύτερη προτίμηση προς μία από τις δύο ομάδες.
+     */
+    private SplitResult quadraticSplit(Node N) {
+        List<Entry> rest = new ArrayList<>(N.getEntries());
+        int seed1 = 0, seed2 = 1;
+        double worst = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < rest.size(); i++) {
+            MBR a = rest.get(i).getMBR();
+            for (int j = i + 1; j < rest.size(); j++) {
+                MBR b = rest.get(j).getMBR();
+                double waste = MBR.union(a, b).area() - a.area() - b.area();
+                if (waste > worst) {
+                    worst = waste;
+                    seed1 = i;
+                    seed2 = j;
+                }
+            }
+        }
+        List<Entry> group1 = new ArrayList<>();
+        List<Entry> group2 = new ArrayList<>();
+        group1.add(rest.get(seed1));
+        group2.add(rest.get(seed2));
+        MBR mbr1 = rest.get(seed1).getMBR().clone();
+        MBR mbr2 = rest.get(seed2).getMBR().clone();
+        rest.remove(seed2);
+        rest.remove(seed1);
+
+        while (!rest.isEmpty()) {
+            // Αν μια ομάδα χρειάζεται όλα τα υπόλοιπα για να φτάσει τα m, τα παίρνει
+            if (group1.size() + rest.size() == m) {
+                group1.addAll(rest);
+                break;
+            }
+            if (group2.size() + rest.size() == m) {
+                group2.addAll(rest);
+                break;
+            }
+            int next = 0;
+            double bestDiff = Double.NEGATIVE_INFINITY;
+            double d1 = 0, d2 = 0;
+            for (int i = 0; i < rest.size(); i++) {
+                double e1 = mbr1.enlargement(rest.get(i).getMBR());
+                double e2 = mbr2.enlargement(rest.get(i).getMBR());
+                if (Math.abs(e1 - e2) > bestDiff) {
+                    bestDiff = Math.abs(e1 - e2);
+                    next = i;
+                    d1 = e1;
+                    d2 = e2;
+                }
+            }
+            Entry e = rest.remove(next);
+            boolean toFirst;
+            if (d1 != d2) {
+                toFirst = d1 < d2;
+            } else if (mbr1.area() != mbr2.area()) {
+                toFirst = mbr1.area() < mbr2.area();
+            } else {
+                toFirst = group1.size() <= group2.size();
+            }
+            if (toFirst) {
+                group1.add(e);
+                mbr1 = MBR.union(mbr1, e.getMBR());
+            } else {
+                group2.add(e);
+                mbr2 = MBR.union(mbr2, e.getMBR());
+            }
+        }
+        return new SplitResult(group1, group2);
+    }
+
+    /**
+     * R*-tree split: ChooseSplitAxis (άξονας με ελάχιστο άθροισμα margins πάνω σε όλες τις
+     * κατανομές και των δύο ταξινομήσεων) και ChooseSplitIndex (ελάχιστο overlap, ισοπαλία →
+     * ελάχιστο συνολικό εμβαδόν). Για κάθε ταξινόμηση τα MBR των προθεμάτων και επιθεμάτων
+     * υπολογίζονται μία φορά σε primitive πίνακες, οπότε κάθε υποψήφια κατανομή κοστίζει
+     * O(DIM) χωρίς καμία δέσμευση μνήμης.
+     */
+    private SplitResult rstarSplit(Node N) {
+        Entry[] entries = N.getEntries().toArray(new Entry[0]);
+        int n = entries.length;
+        double[] preLo = new double[n * DIM], preHi = new double[n * DIM];
+        double[] sufLo = new double[n * DIM], sufHi = new double[n * DIM];
+
         double bestMarginSum = Double.POSITIVE_INFINITY;
-        SplitResult bestSplit = null;
+        Entry[] bestOrder = null;
+        int bestK = -1;
 
         for (int d = 0; d < DIM; d++) {
             final int dimIndex = d;
-
-            List<Entry> sortByMin = new ArrayList<>(N.getEntries());
-            sortByMin.sort(Comparator.comparingDouble(e -> e.getMBR().getMin()[dimIndex]));
-
-            List<Entry> sortByMax = new ArrayList<>(N.getEntries());
-            sortByMax.sort(Comparator.comparingDouble(e -> e.getMBR().getMax()[dimIndex]));
+            double marginSum = 0.0;
+            double axisOverlap = Double.POSITIVE_INFINITY;
+            double axisArea = Double.POSITIVE_INFINITY;
+            Entry[] axisOrder = null;
+            int axisK = -1;
 
             for (int which = 0; which < 2; which++) {
-                List<Entry> sorted = (which == 0) ? sortByMin : sortByMax;
-                double marginSumLocal = 0.0;
-                double bestMarginLocal = Double.POSITIVE_INFINITY;
-                int bestKLocal = -1;
-                int entryCount = sorted.size();
-
-                for (int k = m; k <= entryCount - m; k++) {
-                    MBR mbr1 = null, mbr2 = null;
-                    for (int i = 0; i < k; i++) {
-                        if (mbr1 == null) {
-                            mbr1 = sorted.get(i).getMBR().clone();
-                        } else {
-                            mbr1 = MBR.union(mbr1, sorted.get(i).getMBR());
-                        }
-                    }
-                    for (int i = k; i < entryCount; i++) {
-                        if (mbr2 == null) {
-                            mbr2 = sorted.get(i).getMBR().clone();
-                        } else {
-                            mbr2 = MBR.union(mbr2, sorted.get(i).getMBR());
-                        }
-                    }
-                    double margin = mbr1.margin() + mbr2.margin();
-                    marginSumLocal += margin;
-                    if (margin < bestMarginLocal) {
-                        bestMarginLocal = margin;
-                        bestKLocal = k;
+                Entry[] sorted = entries.clone();
+                if (which == 0) {
+                    Arrays.sort(sorted, Comparator.comparingDouble(e -> e.getMBR().getMin()[dimIndex]));
+                } else {
+                    Arrays.sort(sorted, Comparator.comparingDouble(e -> e.getMBR().getMax()[dimIndex]));
+                }
+                prefixBounds(sorted, preLo, preHi, sufLo, sufHi);
+
+                for (int k = m; k <= n - m; k++) {
+                    // Ομάδα 1 = sorted[0..k), ομάδα 2 = sorted[k..n)
+                    int a = (k - 1) * DIM, b = k * DIM;
+                    marginSum += margin(preLo, preHi, a) + margin(sufLo, sufHi, b);
+                    double overlap = overlap(preLo, preHi, a, sufLo, sufHi, b);
+                    double area = area(preLo, preHi, a) + area(sufLo, sufHi, b);
+                    if (overlap < axisOverlap || (overlap == axisOverlap && area < axisArea)) {
+                        axisOverlap = overlap;
+                        axisArea = area;
+                        axisOrder = sorted;
+                        axisK = k;
                     }
                 }
+            }
 
-                if (marginSumLocal < bestMarginSum) {
-                    bestMarginSum = marginSumLocal;
-                    List<Entry> group1 = new ArrayList<>(sorted.subList(0, bestKLocal));
-                    List<Entry> group2 = new ArrayList<>(sorted.subList(bestKLocal, sorted.size()));
-                    bestSplit = new SplitResult(group1, group2);
-                }
+            if (marginSum < bestMarginSum) {
+                bestMarginSum = marginSum;
+                bestOrder = axisOrder;
+                bestK = axisK;
+            }
+        }
+
+        List<Entry> group1 = new ArrayList<>(Arrays.asList(bestOrder).subList(0, bestK));
+        List<Entry> group2 = new ArrayList<>(Arrays.asList(bestOrder).subList(bestK, n));
+        return new SplitResult(group1, group2);
+    }
+
+    /**
+     * Γεμίζει pre[i] = MBR(sorted[0..i]) και suf[i] = MBR(sorted[i..n)),
+     * με τις συντεταγμένες του i στις θέσεις [i·DIM, (i+1)·DIM).
+     */
+    private void prefixBounds(Entry[] sorted, double[] preLo, double[] preHi,
+                              double[] sufLo, double[] sufHi) {
+        int n = sorted.length;
+        for (int i = 0; i < n; i++) {
+            double[] mn = sorted[i].getMBR().getMin();
+            double[] mx = sorted[i].getMBR().getMax();
+            int o = i * DIM;
+            for (int d = 0; d < DIM; d++) {
+                preLo[o + d] = (i == 0) ? mn[d] : Math.min(preLo[o - DIM + d], mn[d]);
+                preHi[o + d] = (i == 0) ? mx[d] : Math.max(preHi[o - DIM + d], mx[d]);
+            }
+        }
+        for (int i = n - 1; i >= 0; i--) {
+            double[] mn = sorted[i].getMBR().getMin();
+            double[] mx = sorted[i].getMBR().getMax();
+            int o = i * DIM;
+            for (int d = 0; d < DIM; d++) {
+                sufLo[o + d] = (i == n - 1) ? mn[d] : Math.min(sufLo[o + DIM + d], mn[d]);
+                sufHi[o + d] = (i == n - 1) ? mx[d] : Math.max(sufHi[o + DIM + d], mx[d]);
             }
         }
-        return bestSplit;
+    }
+
+    /** Margin (άθροισμα πλευρών) του MBR στη θέση o των πινάκων lo/hi. */
+    private double margin(double[] lo, double[] hi, int o) {
+        double sum = 0.0;
+        for (int d = 0; d < DIM; d++) {
+            sum += hi[o + d] - lo[o + d];
+        }
+        return sum;
+    }
+
+    /** Εμβαδόν του MBR στη θέση o των πινάκων lo/hi. */
+    private double area(double[] lo, double[] hi, int o) {
+        double prod = 1.0;
+        for (int d = 0; d < DIM; d++) {
+            prod *= hi[o + d] - lo[o + d];
+        }
+        return prod;
+    }
+
+    /** Εμβαδόν τομής του MBR (lo1, hi1, a) με το MBR (lo2, hi2, b). */
+    private double overlap(double[] lo1, double[] hi1, int a, double[] lo2, double[] hi2, int b) {
+        double prod = 1.0;
+        for (int d = 0; d < DIM; d++) {
+            double side = Math.min(hi1[a + d], hi2[b + d]) - Math.max(lo1[a + d], lo2[b + d]);
+            if (side <= 0) {
+                return 0.0;
+            }
+            prod *= side;
+        }
+        return prod;
     }
 
     // Queries: rangeQuery, kNNQuery, skylineQuery.
@@ -417,12 +1147,14 @@ public class RStarTree {
      */
     public List<RecordPointer> rangeQuery(double[] minCoords, double[] maxCoords) throws IOException {
         MBR queryMBR = new MBR(minCoords, maxCoords);
-        List<RecordPointer> results = new ArrayList<>();
-        rangeSearch(root, queryMBR, results);
-        return results;
+        return readTree((r, reads) -> {
+            List<RecordPointer> results = new ArrayList<>();
+            rangeSearch(r, queryMBR, results, reads);
+            return results;
+        });
     }
 
-    private void rangeSearch(Node N, MBR query, List<RecordPointer> out) throws IOException {
+    static void rangeSearch(Node.View N, MBR query, List<RecordPointer> out, ReadSet reads) throws IOException {
         if (N.getMBR() == null || !N.getMBR().overlaps(query)) return;
         if (N.isLeaf()) {
             for (Entry e : N.getEntries()) {
@@ -432,163 +1164,490 @@ public class RStarTree {
             }
         } else {
             for (Entry c : N.getEntries()) {
-                if (!c.isInternalEntry()) continue;
-                Node child = indexFile.readNode(c.getChildPage());
-                if (child.getParentPage() != N.getPageId()) {
-                    child.setParentPage(N.getPageId());
-                    indexFile.writeNode(child.getPageId(), child);
-                }
-                rangeSearch(child, query, out);
+                // Διαβάζουμε μόνο τα παιδιά των οποίων το MBR τέμνει το ερώτημα
+                if (!c.isInternalEntry() || !c.getMBR().overlaps(query)) continue;
+                rangeSearch(reads.read(c.getChildPage(), N.getLevel() - 1), query, out, reads);
             }
         }
     }
 
     /**
-     * k-NN query: βρίσκει τα k πλησιέστερα γειτονικά σημεία
-     * με χρήση priority queue (distance-based).
+     * Πλήθος σημείων μέσα στο [minCoords, maxCoords], χωρίς να δημιουργηθεί λίστα αποτελεσμάτων.
+     * Με TreeConfig.hasAggregateCounts(), κάθε υποδέντρο που περιέχεται ολόκληρο στο ερώτημα
+     * μετράει από το πλήθος του entry του, χωρίς να διαβαστεί· αλλιώς μετριούνται τα φύλλα.
      */
-    public List<RecordPointer> kNNQuery(double[] queryPt, int k) throws IOException {
-        PriorityQueue<NNEntry> pq = new PriorityQueue<>();
-        pq.add(new NNEntry(root, root.getMBR().minDist(queryPt)));
-
-        List<RecordPointer> result = new ArrayList<>();
-        while (!pq.isEmpty() && result.size() < k) {
-            NNEntry top = pq.poll();
-            if (top.isNode()) {
-                Node n = top.getNode();
-                if (n.isLeaf()) {
-                    for (Entry e : n.getEntries()) {
-                        double d = e.getMBR().minDist(queryPt);
-                        pq.offer(new NNEntry(e, d));
-                    }
-                } else {
-                    for (Entry e : n.getEntries()) {
-                        if (!e.isInternalEntry()) continue;
-                        Node child = indexFile.readNode(e.getChildPage());
-                        if (child.getParentPage() != n.getPageId()) {
-                            child.setParentPage(n.getPageId());
-                            indexFile.writeNode(child.getPageId(), child);
-                        }
-                        double d = e.getMBR().minDist(queryPt);
-                        pq.offer(new NNEntry(child, d));
-                    }
+    public long countInRange(double[] minCoords, double[] maxCoords) throws IOException {
+        MBR queryMBR = new MBR(minCoords, maxCoords);
+        boolean counts = config.hasAggregateCounts();
+        return readTree((r, reads) -> countSearch(r, queryMBR, counts, reads));
+    }
+
+    private static long countSearch(Node.View N, MBR query, boolean counts, ReadSet reads) throws IOException {
+        if (N.getMBR() == null || !N.getMBR().overlaps(query)) return 0;
+        long total = 0;
+        if (N.isLeaf()) {
+            for (Entry e : N.getEntries()) {
+                if (e.getMBR().isContainedIn(query)) {
+                    total++;
                 }
+            }
+            return total;
+        }
+        for (Entry c : N.getEntries()) {
+            if (!c.isInternalEntry() || !c.getMBR().overlaps(query)) continue;
+            if (counts && c.getMBR().isContainedIn(query)) {
+                total += c.getCount();
             } else {
-                result.add(top.getEntry().getPointer());
+                total += countSearch(reads.read(c.getChildPage(), N.getLevel() - 1), query, counts, reads);
             }
         }
-        return result;
+        return total;
     }
 
     /**
-     * Υπολογίζει το skyline από όλα τα records του DataFile.
+     * Range query σε πολλά threads: τα υποδέντρα που τέμνουν το ερώτημα μοιράζονται σε
+     * εργασίες ενός ForkJoinPool με το πολύ getParallelism() threads, όσο το καθένα
+     * ξεπερνάει το όριο setParallelThreshold() σε σελίδες φύλλων· τα μικρότερα σαρώνονται
+     * σειριακά. Τα αποτελέσματα είναι ίδια με του rangeQuery (με άλλη σειρά).
      */
-    public List<RecordPointer> skylineQuery() throws IOException {
-        List<PointRP> points = new ArrayList<>();
-
-        FileChannel channel = dataFile.getChannel();
-        int blockSize = DataFile.BLOCK_SIZE; // 32 KB
-        long fileSize = channel.size();
-        int totalBlocks = (int) (fileSize / blockSize);
-        int dim = dataFile.getDimension();
-        int slotsPerBlock = dataFile.getSlotsPerBlock();
-        int recordSize = dataFile.getRecordSize();
-
-        // Ξεκινάμε από block 1 (block 0 = metadata)
-        for (int blkId = 1; blkId < totalBlocks; blkId++) {
-            long blockOffset = (long) blkId * blockSize;
-            ByteBuffer headerBuf = ByteBuffer.allocate(4);
-            channel.read(headerBuf, blockOffset);
-            headerBuf.flip();
-            int live = headerBuf.getInt(); // πόσα valid slots
-
-            for (int slot = 0; slot < live; slot++) {
-                long slotPos = blockOffset + 4L + (long) slot * recordSize;
-                ByteBuffer idBuf = ByteBuffer.allocate(8);
-                channel.read(idBuf, slotPos);
-                idBuf.flip();
-                long id = idBuf.getLong();
-                if (id <= 0L) continue; // άκυρο
-
-                long coordsPos = slotPos + 8 + 256;
-                ByteBuffer coordsBuf = ByteBuffer.allocate(8 * dim);
-                channel.read(coordsBuf, coordsPos);
-                coordsBuf.flip();
-                double[] coords = new double[dim];
-                for (int i = 0; i < dim; i++) {
-                    coords[i] = coordsBuf.getDouble();
+    public List<RecordPointer> rangeQueryParallel(double[] minCoords, double[] maxCoords) throws IOException {
+        MBR queryMBR = new MBR(minCoords, maxCoords);
+        ForkJoinPool pool = queryPool();
+        long threshold = parallelThreshold;
+        double fanout = 0.5 * (m + M);
+        return readTree((r, reads) -> {
+            if (r.isLeaf() || r.getMBR() == null || !r.getMBR().overlaps(queryMBR)) {
+                List<RecordPointer> results = new ArrayList<>();
+                rangeSearch(r, queryMBR, results, reads);
+                return results;
+            }
+            Entry[] top = RangeQueryTask.overlapping(r, queryMBR);
+            try {
+                return pool.invoke(new RangeQueryTask(top, 0, top.length, r.getLevel() - 1,
+                        queryMBR, threshold, fanout, reads));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        });
+    }
+
+    /**
+     * Ορίζει το μέγιστο πλήθος threads του rangeQueryParallel (προεπιλογή: όσοι πυρήνες).
+     * Το προηγούμενο pool τερματίζεται αφού τελειώσουν τα ερωτήματα που τρέχουν σε αυτό.
+     */
+    public synchronized void setParallelism(int parallelism) {
+        ForkJoinPool old = parallelPool;
+        parallelPool = new ForkJoinPool(parallelism);
+        if (old != null) {
+            old.shutdown();
+        }
+    }
+
+    /** @return Το μέγιστο πλήθος threads του rangeQueryParallel. */
+    public int getParallelism() {
+        return queryPool().getParallelism();
+    }
+
+    /**
+     * Ορίζει από πόσες (εκτιμώμενες) σελίδες φύλλων και πάνω ένα υποδέντρο μοιράζεται
+     * σε ξεχωριστές εργασίες στο rangeQueryParallel.
+     */
+    public void setParallelThreshold(long leafPages) {
+        if (leafPages < 1) {
+            throw new IllegalArgumentException("setParallelThreshold: πρέπει να είναι ≥ 1");
+        }
+        this.parallelThreshold = leafPages;
+    }
+
+    private synchronized ForkJoinPool queryPool() {
+        if (parallelPool == null) {
+            parallelPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        }
+        return parallelPool;
+    }
+
+    /**
+     * Lazy range query: τα αποτελέσματα του rangeQuery, αλλά οι σελίδες διαβάζονται μόνο
+     * καθώς καταναλώνεται ο cursor (βλ. QueryCursor). Για τα πρώτα n αποτελέσματα:
+     * {@code rangeCursor(min, max).stream().limit(n)}.
+     */
+    public QueryCursor rangeCursor(double[] minCoords, double[] maxCoords) {
+        Node r = cursorRoot();
+        return new RangeCursor(this, new MBR(minCoords, maxCoords), r.getPageId(), r.getLevel());
+    }
+
+    /**
+     * Range query για πολλά παράθυρα μαζί: το δέντρο διασχίζεται μία φορά, κρατώντας σε κάθε
+     * υποδέντρο μόνο τα παράθυρα που τέμνουν το MBR του, οπότε κάθε σελίδα διαβάζεται το πολύ
+     * μία φορά ανά batch. Τα παράθυρα ταξινομούνται κατά Hilbert (κέντρο), ώστε όσα
+     * ενεργοποιούνται στο ίδιο υποδέντρο να είναι και γειτονικά στον πίνακα.
+     *
+     * @param windows Τα παράθυρα του ερωτήματος.
+     * @return Μία λίστα αποτελεσμάτων ανά παράθυρο, στη σειρά του windows.
+     */
+    public List<List<RecordPointer>> rangeQueryBatch(List<MBR> windows) throws IOException {
+        MBR[] queries = windows.toArray(new MBR[0]);
+        int n = queries.length;
+        double[][] centers = new double[n][DIM];
+        for (int q = 0; q < n; q++) {
+            for (int d = 0; d < DIM; d++) {
+                centers[q][d] = (queries[q].getMin()[d] + queries[q].getMax()[d]) / 2.0;
+            }
+        }
+        return readTree((r, reads) -> {
+            List<List<RecordPointer>> results = new ArrayList<>(n);
+            for (int q = 0; q < n; q++) {
+                results.add(new ArrayList<>());
+            }
+            if (n == 0 || r.getMBR() == null) {
+                return results;
+            }
+            int[] order = spatialOrder(centers, r.getMBR());
+            int[] active = new int[n];
+            int count = 0;
+            for (int q : order) {
+                if (queries[q].overlaps(r.getMBR())) {
+                    active[count++] = q;
                 }
-                RecordPointer rp = new RecordPointer(blkId, slot);
-                points.add(new PointRP(coords, rp));
             }
+            if (count > 0) {
+                batchRangeSearch(r, queries, active, count, results, reads);
+            }
+            return results;
+        });
+    }
+
+    /** Αναδρομή του rangeQueryBatch: active[0..count) είναι τα παράθυρα που τέμνουν τον N. */
+    private void batchRangeSearch(Node.View N, MBR[] queries, int[] active, int count,
+                                  List<List<RecordPointer>> out, ReadSet reads) throws IOException {
+        if (N.isLeaf()) {
+            for (Entry e : N.getEntries()) {
+                for (int i = 0; i < count; i++) {
+                    int q = active[i];
+                    if (e.getMBR().isContainedIn(queries[q])) {
+                        out.get(q).add(e.getPointer());
+                    }
+                }
+            }
+            return;
+        }
+        int[] sub = new int[count];
+        for (Entry c : N.getEntries()) {
+            if (!c.isInternalEntry()) continue;
+            int subCount = 0;
+            for (int i = 0; i < count; i++) {
+                if (c.getMBR().overlaps(queries[active[i]])) {
+                    sub[subCount++] = active[i];
+                }
+            }
+            if (subCount == 0) continue;
+            // Το sub ξαναγεμίζει για το επόμενο παιδί, οπότε η αναδρομή παίρνει αντίγραφο
+            batchRangeSearch(reads.read(c.getChildPage(), N.getLevel() - 1), queries,
+                    Arrays.copyOf(sub, subCount), subCount, out, reads);
         }
+    }
 
-        // Ταξινόμηση κατά πρώτη διάσταση (και tie-break κατά δεύτερη)
-        points.sort((a, b) -> {
-            int cmp = Double.compare(a.coords[0], b.coords[0]);
-            if (cmp != 0) return cmp;
-            return Double.compare(a.coords[1], b.coords[1]);
+    /**
+     * k-NN query: βρίσκει τα k πλησιέστερα γειτονικά σημεία, με αύξουσα απόσταση
+     * (best-first με φραγμένο heap, βλ. KnnSearch).
+     */
+    public List<RecordPointer> kNNQuery(double[] queryPt, int k) throws IOException {
+        return readTree((r, reads) -> kNNSearch(r, queryPt, k, reads));
+    }
+
+    private List<RecordPointer> kNNSearch(Node.View root, double[] queryPt, int k, ReadSet reads) throws IOException {
+        return KNN_SEARCH.get().search(root, queryPt, k, reads);
+    }
+
+    /**
+     * Lazy k-NN: όλα τα σημεία του δέντρου με αύξουσα απόσταση από το queryPt. Κάθε σελίδα
+     * διαβάζεται μόνο όταν είναι η πλησιέστερη εκκρεμότητα, οπότε τα πρώτα k αποτελέσματα
+     * ({@code nearestCursor(p).stream().limit(k)}) κοστίζουν όσο ένα kNNQuery(p, k).
+     */
+    public QueryCursor nearestCursor(double[] queryPt) {
+        Node r = cursorRoot();
+        return new NearestCursor(this, queryPt, r.getPageId(), r.getLevel());
+    }
+
+    /**
+     * k-NN query για πολλά σημεία μαζί. Τα σημεία εξυπηρετούνται κατά σειρά Hilbert, ώστε
+     * διαδοχικά ερωτήματα να κατεβαίνουν τα ίδια μονοπάτια, και όλα μοιράζονται τους κόμβους
+     * που διαβάστηκαν ήδη στο batch: κάθε σελίδα διαβάζεται το πολύ μία φορά.
+     *
+     * @param points Τα σημεία του ερωτήματος.
+     * @param k      Πλήθος γειτόνων ανά σημείο.
+     * @return Μία λίστα αποτελεσμάτων ανά σημείο, στη σειρά του points.
+     */
+    public List<List<RecordPointer>> kNNQueryBatch(List<double[]> points, int k) throws IOException {
+        double[][] queries = points.toArray(new double[0][]);
+        int n = queries.length;
+        return readTree((r, reads) -> {
+            List<List<RecordPointer>> results = new ArrayList<>(n);
+            for (int q = 0; q < n; q++) {
+                results.add(new ArrayList<>());
+            }
+            if (n == 0 || r.getMBR() == null) {
+                return results;
+            }
+            reads.shareNodes();
+            for (int q : spatialOrder(queries, r.getMBR())) {
+                results.set(q, kNNSearch(r, queries[q], k, reads));
+            }
+            return results;
         });
+    }
 
-        // Πέρασμα για nondominated κατά y
+    /** @return Οι δείκτες των points ταξινομημένοι κατά το κλειδί Hilbert τους μέσα στο bounds. */
+    private static int[] spatialOrder(double[][] points, MBR bounds) {
+        int n = points.length;
+        long[] keys = new long[n];
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            keys[i] = HilbertCurve.key(points[i], bounds.getMin(), bounds.getMax());
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingLong(i -> keys[i]));
+        int[] out = new int[n];
+        for (int i = 0; i < n; i++) {
+            out[i] = order[i];
+        }
+        return out;
+    }
+
+    /** Skyline όλου του δέντρου (μικρότερες τιμές = καλύτερες, σε κάθε διάσταση). */
+    public List<RecordPointer> skylineQuery() throws IOException {
+        return readTree((r, reads) -> bbs(r, null, reads));
+    }
+
+    /**
+     * Constrained skyline: το skyline μόνο των σημείων μέσα στο [minCoords, maxCoords]
+     * (ένα σημείο εκτός παραθύρου δεν αποκλείει κανένα μέσα σε αυτό).
+     */
+    public List<RecordPointer> skylineQuery(double[] minCoords, double[] maxCoords) throws IOException {
+        MBR window = new MBR(minCoords, maxCoords);
+        return readTree((r, reads) -> bbs(r, window, reads));
+    }
+
+    /**
+     * Branch-and-Bound Skyline (Papadias et al.): τα entries βγαίνουν από την ουρά με αύξουσα
+     * απόσταση L1 της κάτω γωνίας τους από την αρχή των αξόνων, οπότε κάθε σημείο που βγαίνει
+     * και δεν κυριαρχείται ανήκει στο skyline. Ένα MBR (ή σημείο) του οποίου την κάτω γωνία
+     * κυριαρχεί (≤ σε όλες τις διαστάσεις) κάποιο σημείο του skyline απορρίπτεται χωρίς να
+     * διαβαστεί. Όπως και πριν, από ίδια σημεία επιστρέφεται μόνο ένα.
+     *
+     * @param window null για όλο το δέντρο· αλλιώς, μόνο σημεία μέσα σε αυτό.
+     */
+    private List<RecordPointer> bbs(Node.View root, MBR window, ReadSet reads) throws IOException {
         List<RecordPointer> skyline = new ArrayList<>();
-        double bestY = Double.POSITIVE_INFINITY;
-        for (PointRP pr : points) {
-            double y = pr.coords[1];
-            if (y < bestY) {
-                skyline.add(pr.rp);
-                bestY = y;
+        List<double[]> skylinePts = new ArrayList<>();
+        if (root.getMBR() == null || (window != null && !root.getMBR().overlaps(window))) {
+            return skyline;
+        }
+        PriorityQueue<SkylineEntry> heap = new PriorityQueue<>();
+        heap.add(new SkylineEntry(0.0, lowerCorner(root.getMBR(), window), root.getPageId(), root.getLevel(), null));
+        while (!heap.isEmpty()) {
+            SkylineEntry top = heap.poll();
+            if (dominated(skylinePts, top.corner)) continue;
+            if (top.pointer != null) {
+                skyline.add(top.pointer);
+                skylinePts.add(top.corner);
+                continue;
+            }
+            Node.View n = (top.page == root.getPageId()) ? root : reads.read(top.page, top.level);
+            for (Entry e : n.getEntries()) {
+                if (n.isLeaf()) {
+                    if (window != null && !e.getMBR().isContainedIn(window)) continue;
+                } else if (!e.isInternalEntry() || (window != null && !e.getMBR().overlaps(window))) {
+                    continue;
+                }
+                double[] corner = lowerCorner(e.getMBR(), window);
+                if (dominated(skylinePts, corner)) continue;
+                double key = 0.0;
+                for (int d = 0; d < DIM; d++) {
+                    key += corner[d];
+                }
+                heap.add(n.isLeaf()
+                        ? new SkylineEntry(key, corner, -1, -1, e.getPointer())
+                        : new SkylineEntry(key, corner, e.getChildPage(), n.getLevel() - 1, null));
             }
         }
         return skyline;
     }
 
+    /** Η κάτω γωνία του box, περιορισμένη στο window (αν υπάρχει). */
+    private double[] lowerCorner(MBR box, MBR window) {
+        double[] c = box.getMin().clone();
+        if (window != null) {
+            for (int d = 0; d < DIM; d++) {
+                c[d] = Math.max(c[d], window.getMin()[d]);
+            }
+        }
+        return c;
+    }
+
+    /** @return true αν κάποιο σημείο του skyline είναι ≤ του p σε όλες τις διαστάσεις. */
+    private static boolean dominated(List<double[]> skyline, double[] p) {
+        for (double[] s : skyline) {
+            boolean dominates = true;
+            for (int d = 0; d < p.length && dominates; d++) {
+                dominates = s[d] <= p[d];
+            }
+            if (dominates) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Entry της ουράς του BBS: σελίδα (pointer == null) ή σημείο, με κλειδί τη L1 απόσταση. */
+    private static final class SkylineEntry implements Comparable<SkylineEntry> {
+        final double key;
+        final double[] corner;
+        final int page;
+        final int level;
+        final RecordPointer pointer;
+
+        SkylineEntry(double key, double[] corner, int page, int level, RecordPointer pointer) {
+            this.key = key;
+            this.corner = corner;
+            this.page = page;
+            this.level = level;
+            this.pointer = pointer;
+        }
+
+        @Override
+        public int compareTo(SkylineEntry other) {
+            return Double.compare(key, other.key);
+        }
+    }
+
+    /**
+     * Latch του κόμβου N για την τρέχουσα λειτουργία εγγραφής: πριν από την πρώτη αλλαγή του
+     * η έκδοση της σελίδας του γίνεται περιττή, ώστε οι αναγνώστες που τον διαβάζουν να
+     * ξανατρέξουν. Καλείται πάντα πριν τροποποιηθεί κόμβος που μπορεί να έχει δει αναγνώστης.
+     */
+    private void latch(Node N) {
+        int page = N.getPageId();
+        if (latchedPages.get(page)) {
+            return;
+        }
+        latchedPages.set(page);
+        if (latchedCount == latched.length) {
+            latched = Arrays.copyOf(latched, 2 * latchedCount);
+            latchedNodes = Arrays.copyOf(latchedNodes, 2 * latchedCount);
+        }
+        latchedNodes[latchedCount] = N;
+        latched[latchedCount++] = page;
+        bufferPool.beginWrite(page);
+    }
 
-    /** Εσωτερική helper κλάση για skylineQuery: συνδυάζει coords + RecordPointer. */
-    private static class PointRP {
-        double[] coords;
-        RecordPointer rp;
-        PointRP(double[] c, RecordPointer r) {
-            this.coords = c;
-            this.rp = r;
+    /**
+     * Τέλος λειτουργίας εγγραφής: οι κόμβοι που άλλαξαν δημοσιεύουν το νέο τους στιγμιότυπο
+     * και μετά οι σελίδες τους παίρνουν νέα (άρτια) έκδοση.
+     */
+    private void releaseLatches() {
+        for (int i = 0; i < latchedCount; i++) {
+            latchedNodes[i].publish();
+            latchedNodes[i] = null;
+            bufferPool.endWrite(latched[i]);
         }
+        latchedPages.clear();
+        latchedCount = 0;
+    }
+
+    /** Ανάγνωση του δέντρου από ρίζα, με δεδομένο στιγμιότυπο ρίζας και ReadSet. */
+    private interface TreeRead<T> {
+        T run(Node.View root, ReadSet reads) throws IOException;
     }
 
-    // Βοηθητική μέθοδος
     /**
-     * Ενημερώνει αναδρομικά τα MBR όλων των κόμβων από τον κόμβο n έως τη ρίζα.
-     * Κάθε φορά:
-     *   – Διαβάζουμε τον γονέα,
-     *   – Αναζητούμε ποια εγγραφή του γονέα δείχνει στο n,
-     *   – Αντιστοιχούμε το MBR της εγγραφής στο MBR του n,
-     *   – Γράφουμε τον γονέα πίσω στο IndexFile.
+     * Εκτελεί optimistic το ερώτημα op: χωρίς κλείδωμα, με επικύρωση των εκδόσεων όλων των
+     * σελίδων που διάβασε και του στιγμιότυπου της ρίζας. Αν ο writer άλλαξε κάτι στο μεταξύ,
+     * ξανατρέχει· μετά από OPTIMISTIC_ATTEMPTS αποτυχίες τρέχει κρατώντας το writeLock.
      */
-    private void adjustTree(Node n) throws IOException {
-        int currentPage = n.getPageId();
-        int parentPage = n.getParentPage();
+    private <T> T readTree(TreeRead<T> op) throws IOException {
+        for (int attempt = 0; attempt < OPTIMISTIC_ATTEMPTS; attempt++) {
+            Node r = root;
+            ReadSet reads = new ReadSet(bufferPool, true);
+            try {
+                T result = op.run(reads.root(r), reads);
+                if (reads.validate() && root == r) {
+                    return result;
+                }
+            } catch (IOException | RuntimeException e) {
+                // Μόνο ανάγνωση που συγκρούστηκε με τον writer ξανατρέχει· τα υπόλοιπα είναι σφάλματα
+                if (!reads.isConflict(e) && root == r) {
+                    throw e;
+                }
+            }
+            optimisticRetries.increment();
+            Thread.onSpinWait();
+        }
+        writeLock.lock();
+        try {
+            return op.run(root.view(), new ReadSet(bufferPool, false));
+        } finally {
+            writeLock.unlock();
+        }
+    }
 
-        while (parentPage >= 0) {
-            Node parent = indexFile.readNode(parentPage);
-            boolean updated = false;
+    /** Η ρίζα από την οποία ξεκινάει ένας QueryCursor (αν τρέχει bulkLoad, μετά το τέλος του). */
+    private Node cursorRoot() {
+        Node r = root;
+        if (r != null) {
+            return r;
+        }
+        writeLock.lock();
+        try {
+            return root;
+        } finally {
+            writeLock.unlock();
+        }
+    }
 
-            for (Entry e : parent.getEntries()) {
-                if (e.isInternalEntry() && e.getChildPage() == currentPage) {
-                    e.setMBR(n.getMBR());  // Αντιστοιχούμε MBR
-                    updated = true;
-                    break;
+    /**
+     * Διαβάζει για λογαριασμό ενός QueryCursor τη σελίδα pageId (επιπέδου level) και επιστρέφει
+     * το copy του στιγμιότυπου του κόμβου της, επικυρωμένο μόνο για αυτή τη σελίδα. Μετά από OPTIMISTIC_ATTEMPTS
+     * συγκρούσεις διαβάζει με writeLock· αν τότε η σελίδα δεν είναι πια κόμβος επιπέδου level
+     * (το υποδέντρο καταργήθηκε στο μεταξύ), επιστρέφει null.
+     */
+    <T> T snapshotPage(int pageId, int level, Function<Node.View, T> copy) throws IOException {
+        for (int attempt = 0; attempt < OPTIMISTIC_ATTEMPTS; attempt++) {
+            ReadSet reads = new ReadSet(bufferPool, true);
+            try {
+                T out = copy.apply(reads.read(pageId, level));
+                if (reads.validate()) {
+                    return out;
+                }
+            } catch (IOException | RuntimeException e) {
+                // Η σελίδα άλλαζε την ώρα που τη διαβάζαμε· αλλιώς το σφάλμα είναι πραγματικό
+                if (!reads.isConflict(e)) {
+                    throw e;
                 }
             }
-            if (updated) {
-                parent.recomputeMBRUpward();
-                indexFile.writeNode(parentPage, parent);
+            optimisticRetries.increment();
+            Thread.onSpinWait();
+        }
+        writeLock.lock();
+        try {
+            Node n = bufferPool.readNode(pageId);
+            if (n == null || n.getLevel() != level) {
+                return null;
             }
+            return copy.apply(n.view());
+        } finally {
+            writeLock.unlock();
+        }
+    }
 
-            // Προχωράμε έναν κόμβο πάνω
-            currentPage = parent.getPageId();
-            parentPage = parent.getParentPage();
-            n = parent;
+    /** Αλλάζει τη ρίζα και την κρατάει pinned στο buffer pool. */
+    private void setRoot(Node newRoot) {
+        if (root != null && root.getPageId() != newRoot.getPageId()) {
+            bufferPool.unpin(root.getPageId());
+        }
+        if (root == null || root.getPageId() != newRoot.getPageId()) {
+            bufferPool.pin(newRoot.getPageId());
         }
-        // Τέλος, ανανεώνουμε τη ρίζα
-        root = indexFile.readNode(currentPage);
+        root = newRoot;
     }
 }
\ No newline at end of file
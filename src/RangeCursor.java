@@ -0,0 +1,100 @@
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Cursor του RStarTree.rangeCursor(): depth-first διάσχιση με ρητή στοίβα. Κάθε πλαίσιο
+ * κρατάει τις σελίδες-παιδιά ενός κόμβου που τέμνουν το ερώτημα· από κάθε φύλλο κρατιούνται
+ * μόνο τα σημεία του που είναι μέσα στο ερώτημα, μέχρι να καταναλωθούν.
+ */
+final class RangeCursor extends QueryCursor {
+    private static final RecordPointer[] NONE = new RecordPointer[0];
+
+    private final RStarTree tree;
+    private final MBR query;
+    private final ArrayDeque<Frame> stack = new ArrayDeque<>();
+    private RecordPointer[] leaf = NONE;
+    private int leafPos;
+
+    /** Σελίδες επιπέδου level που μένουν να επισκεφθούμε, από τη θέση pos και μετά. */
+    private static final class Frame {
+        final int[] pages;
+        final int level;
+        int pos;
+
+        Frame(int[] pages, int level) {
+            this.pages = pages;
+            this.level = level;
+        }
+    }
+
+    RangeCursor(RStarTree tree, MBR query, int rootPage, int rootLevel) {
+        this.tree = tree;
+        this.query = query;
+        stack.push(new Frame(new int[]{ rootPage }, rootLevel));
+    }
+
+    @Override
+    RecordPointer advance() throws IOException {
+        while (true) {
+            if (leafPos < leaf.length) {
+                return leaf[leafPos++];
+            }
+            Frame f = stack.peek();
+            if (f == null) {
+                return null;
+            }
+            if (f.pos == f.pages.length) {
+                stack.pop();
+                continue;
+            }
+            int page = f.pages[f.pos++];
+            if (f.level == 0) {
+                RecordPointer[] hits = tree.snapshotPage(page, 0, this::contained);
+                if (hits != null) {
+                    leaf = hits;
+                    leafPos = 0;
+                }
+            } else {
+                int[] children = tree.snapshotPage(page, f.level, this::overlapping);
+                if (children != null && children.length > 0) {
+                    stack.push(new Frame(children, f.level - 1));
+                }
+            }
+        }
+    }
+
+    @Override
+    void release() {
+        stack.clear();
+        leaf = NONE;
+        leafPos = 0;
+    }
+
+    private RecordPointer[] contained(Node.View leafNode) {
+        if (leafNode.getMBR() == null || !leafNode.getMBR().overlaps(query)) {
+            return NONE;
+        }
+        List<RecordPointer> out = new ArrayList<>();
+        for (Entry e : leafNode.getEntries()) {
+            if (e.getMBR().isContainedIn(query)) {
+                out.add(e.getPointer());
+            }
+        }
+        return out.toArray(NONE);
+    }
+
+    private int[] overlapping(Node.View N) {
+        List<Entry> entries = N.getEntries();
+        int[] out = new int[entries.size()];
+        int count = 0;
+        for (Entry c : entries) {
+            if (c.isInternalEntry() && c.getMBR().overlaps(query)) {
+                out[count++] = c.getChildPage();
+            }
+        }
+        return count == out.length ? out : Arrays.copyOf(out, count);
+    }
+}
@@ -0,0 +1,101 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Fork/join εργασία του RStarTree.rangeQueryParallel(): καλύπτει ένα διάστημα
+ * [from, to) από τα entries ενός εσωτερικού κόμβου που τέμνουν το ερώτημα.
+ *
+ * Όσο η εκτιμώμενη δουλειά (σελίδες φύλλων κάτω από το διάστημα) ξεπερνάει το threshold,
+ * το διάστημα μοιράζεται στα δύο (ή, αν είναι ένα μόνο παιδί, κατεβαίνει ένα επίπεδο)·
+ * αλλιώς τα υποδέντρα σαρώνονται σειριακά. Κάθε εργασία γεμίζει δική της λίστα
+ * αποτελεσμάτων και δικό της ReadSet, που ενώνονται στο join, οπότε δεν υπάρχει
+ * κοινή δομή ανάμεσα στα threads.
+ */
+final class RangeQueryTask extends RecursiveTask<List<RecordPointer>> {
+    private static final long serialVersionUID = 1L;
+
+    private final Entry[] children;   // entries που τέμνουν το ερώτημα (παιδιά επιπέδου childLevel)
+    private final int from;
+    private final int to;
+    private final int childLevel;
+    private final MBR query;
+    private final long threshold;     // σελίδες φύλλων κάτω από τις οποίες η εργασία δεν διασπάται
+    private final double fanout;      // εκτίμηση του μέσου πλήθους παιδιών ανά κόμβο
+    final ReadSet reads;
+
+    RangeQueryTask(Entry[] children, int from, int to, int childLevel, MBR query,
+                   long threshold, double fanout, ReadSet reads) {
+        this.children = children;
+        this.from = from;
+        this.to = to;
+        this.childLevel = childLevel;
+        this.query = query;
+        this.threshold = threshold;
+        this.fanout = fanout;
+        this.reads = reads;
+    }
+
+    /** @return Τα entries του εσωτερικού κόμβου N που τέμνουν το query. */
+    static Entry[] overlapping(Node.View N, MBR query) {
+        List<Entry> out = new ArrayList<>();
+        for (Entry c : N.getEntries()) {
+            if (c.isInternalEntry() && c.getMBR().overlaps(query)) {
+                out.add(c);
+            }
+        }
+        return out.toArray(new Entry[0]);
+    }
+
+    @Override
+    protected List<RecordPointer> compute() {
+        try {
+            int count = to - from;
+            if (count > 1 && estimatedLeaves(count) > threshold) {
+                int mid = (from + to) >>> 1;
+                RangeQueryTask left = new RangeQueryTask(children, from, mid, childLevel, query,
+                        threshold, fanout, reads.fork());
+                RangeQueryTask right = new RangeQueryTask(children, mid, to, childLevel, query,
+                        threshold, fanout, reads.fork());
+                left.fork();
+                List<RecordPointer> out = right.compute();
+                List<RecordPointer> leftOut = left.join();
+                reads.merge(left.reads);
+                reads.merge(right.reads);
+                leftOut.addAll(out);
+                return leftOut;
+            }
+            if (count == 1 && childLevel > 0 && estimatedLeaves(1) > threshold) {
+                // Ένα μεγάλο υποδέντρο: η διάσπαση συνεχίζεται στα παιδιά του
+                Node.View child = reads.read(children[from].getChildPage(), childLevel);
+                Entry[] next = overlapping(child, query);
+                return new RangeQueryTask(next, 0, next.length, childLevel - 1, query,
+                        threshold, fanout, reads).compute();
+            }
+            List<RecordPointer> out = new ArrayList<>();
+            for (int i = from; i < to; i++) {
+                RStarTree.rangeSearch(reads.read(children[i].getChildPage(), childLevel), query, out, reads);
+            }
+            return out;
+        } catch (IOException e) {
+            if (reads.isConflict(e)) {
+                throw ReadSet.CONFLICT;
+            }
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            // Το ReadSet μιας εργασίας που απέτυχε δεν ενώνεται στο join· η σύγκρουση
+            // αναγνωρίζεται εδώ, όσο οι εκδόσεις που διάβασε είναι ακόμη διαθέσιμες
+            if (e != ReadSet.CONFLICT && reads.isConflict(e)) {
+                throw ReadSet.CONFLICT;
+            }
+            throw e;
+        }
+    }
+
+    /** Εκτίμηση σελίδων φύλλων κάτω από count παιδιά επιπέδου childLevel. */
+    private double estimatedLeaves(int count) {
+        return count * Math.pow(fanout, childLevel);
+    }
+}
@@ -0,0 +1,186 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Σύνολο ανάγνωσης ενός optimistic ερωτήματος στο RStarTree: κρατάει κάθε σελίδα που
+ * διαβάστηκε μαζί με την έκδοσή της (BufferPool.pageVersion) τη στιγμή της ανάγνωσης.
+ * Στο τέλος του ερωτήματος το validate() ελέγχει ότι καμία δεν άλλαξε στο μεταξύ·
+ * αλλιώς ο writer άγγιξε κάτι που διαβάσαμε και το ερώτημα ξανατρέχει.
+ *
+ * Οι αναγνώστες δεν βλέπουν ποτέ τον κόμβο που αλλάζει ο writer, μόνο το αμετάβλητο
+ * Node.View του. Κάθε σελίδα επικυρώνεται και μόνη της τη στιγμή της ανάγνωσης: η έκδοση
+ * ξαναελέγχεται αφού ληφθεί το στιγμιότυπο, οπότε ένα ερώτημα δεν ακολουθεί δείκτες από
+ * στιγμιότυπο που είχε ήδη αντικατασταθεί. Μια σελίδα με περιττή έκδοση τροποποιείται
+ * εκείνη τη στιγμή, οπότε η ανάγνωση εγκαταλείπεται αμέσως με CONFLICT.
+ */
+final class ReadSet {
+    /** Σύγκρουση με τον writer· προκατασκευασμένο, χωρίς stack trace. */
+    static final RuntimeException CONFLICT = new RuntimeException("optimistic read conflict", null, false, false) { };
+
+    private final BufferPool pool;
+    private final boolean validating;
+    private int[] pages = new int[16];
+    private long[] versions = new long[16];
+    private int size;
+    private Map<Integer, Node.View> shared;  // κόμβοι που διαβάστηκαν ήδη (μόνο μετά από shareNodes())
+
+    /**
+     * @param pool       Το buffer pool του δέντρου.
+     * @param validating false όταν ο αναγνώστης κρατάει ήδη το lock του writer
+     *                   (τότε δεν καταγράφεται και δεν ελέγχεται τίποτα).
+     */
+    ReadSet(BufferPool pool, boolean validating) {
+        this.pool = pool;
+        this.validating = validating;
+    }
+
+    /**
+     * Καταγράφει τη ρίζα (το αντικείμενο έχει ήδη διαβαστεί από το volatile πεδίο του δέντρου)
+     * και επιστρέφει το στιγμιότυπό της.
+     */
+    Node.View root(Node root) {
+        if (root == null) {
+            throw CONFLICT; // bulkLoad σε εξέλιξη
+        }
+        if (!validating) {
+            return root.view();
+        }
+        long v = record(root.getPageId());
+        Node.View view = root.view();
+        recheck(root.getPageId(), v);
+        return view;
+    }
+
+    /**
+     * Διαβάζει τον κόμβο της σελίδας pageId, που πρέπει να είναι επιπέδου level.
+     * Διαφορετικό επίπεδο ή ελεύθερη σελίδα σημαίνει ότι ο δείκτης που ακολουθήσαμε
+     * διαβάστηκε ενώ άλλαζε.
+     */
+    Node.View read(int pageId, int level) throws IOException {
+        Node.View n = shared != null ? shared.get(pageId) : null;
+        if (n == null) {
+            long v = validating ? record(pageId) : 0L;
+            Node node = pool.readNode(pageId);
+            if (node != null) {
+                n = node.view();
+                if (validating) {
+                    recheck(pageId, v);
+                }
+                if (shared != null) {
+                    shared.put(pageId, n);
+                }
+            }
+        }
+        if (n == null || n.getLevel() != level) {
+            if (validating) {
+                throw CONFLICT;
+            }
+            throw new IOException("ReadSet: η σελίδα " + pageId + " δεν είναι κόμβος επιπέδου " + level);
+        }
+        return n;
+    }
+
+    /**
+     * Από εδώ και πέρα κάθε σελίδα διαβάζεται μία φορά: οι επόμενες αναγνώσεις της
+     * επιστρέφουν τον ίδιο κόμβο χωρίς να ξαναπεράσουν από το buffer pool
+     * (για ερωτήματα batch που κατεβαίνουν πολλές φορές τα ίδια μονοπάτια).
+     */
+    void shareNodes() {
+        if (shared == null) {
+            shared = new HashMap<>();
+        }
+    }
+
+    private long record(int pageId) {
+        long v = pool.pageVersion(pageId);
+        if ((v & 1L) != 0) {
+            throw CONFLICT;
+        }
+        if (size == pages.length) {
+            pages = Arrays.copyOf(pages, 2 * size);
+            versions = Arrays.copyOf(versions, 2 * size);
+        }
+        pages[size] = pageId;
+        versions[size] = v;
+        size++;
+        return v;
+    }
+
+    /**
+     * Επικύρωση μίας σελίδας: αν η έκδοσή της άλλαξε από τη στιγμή του record(), το
+     * στιγμιότυπο που μόλις διαβάστηκε μπορεί να είναι ήδη παλιό.
+     */
+    private void recheck(int pageId, long version) {
+        if (pool.pageVersion(pageId) != version) {
+            throw CONFLICT;
+        }
+    }
+
+    /** @return Νέο, κενό ReadSet του ίδιου τύπου, για παράλληλη εργασία του ίδιου ερωτήματος. */
+    ReadSet fork() {
+        return new ReadSet(pool, validating);
+    }
+
+    /** Προσθέτει τις αναγνώσεις μιας εργασίας που προήλθε από fork(). */
+    void merge(ReadSet other) {
+        if (!validating || other == this || other.size == 0) {
+            return;
+        }
+        if (size + other.size > pages.length) {
+            int cap = Math.max(2 * pages.length, size + other.size);
+            pages = Arrays.copyOf(pages, cap);
+            versions = Arrays.copyOf(versions, cap);
+        }
+        System.arraycopy(other.pages, 0, pages, size, other.size);
+        System.arraycopy(other.versions, 0, versions, size, other.size);
+        size += other.size;
+    }
+
+    /** @return true αν καμία από τις σελίδες που διαβάστηκαν δεν άλλαξε έκδοση. */
+    boolean validate() {
+        if (!validating) {
+            return true;
+        }
+        // Οι αναγνώσεις των κόμβων δεν επιτρέπεται να μετακινηθούν μετά τον έλεγχο των εκδόσεων
+        VarHandle.acquireFence();
+        for (int i = 0; i < size; i++) {
+            if (pool.pageVersion(pages[i]) != versions[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Αν η εξαίρεση e, που πέταξε ένα optimistic ερώτημα, οφείλεται στον writer.
+     * Το CONFLICT (και όταν το τυλίγει το ForkJoinPool) σημαίνει πάντα σύγκρουση. Κάθε
+     * στιγμιότυπο είναι συνεπές, αλλά ένα ερώτημα μπορεί να ακολουθήσει δείκτη σε σελίδα που
+     * στο μεταξύ ελευθερώθηκε ή ξαναχρησιμοποιήθηκε· τότε ένα IOException (και το
+     * UncheckedIOException του ForkJoinPool) ή ένα IndexOutOfBounds, ConcurrentModification,
+     * NoSuchElement, NullPointer μετράει ως σύγκρουση μόνο αν κάποια σελίδα που διαβάστηκε
+     * άλλαξε έκδοση· αλλιώς είναι πραγματικό σφάλμα και πρέπει να φτάσει στον καλούντα.
+     */
+    boolean isConflict(Exception e) {
+        if (e == CONFLICT || e.getCause() == CONFLICT) {
+            return true;
+        }
+        boolean torn = e instanceof IOException
+                || e instanceof UncheckedIOException
+                || e instanceof IndexOutOfBoundsException
+                || e instanceof ConcurrentModificationException
+                || e instanceof NoSuchElementException
+                || e instanceof NullPointerException;
+        return torn && !validate();
+    }
+
+    /** @return Πόσες σελίδες διαβάστηκαν. */
+    int size() {
+        return size;
+    }
+}
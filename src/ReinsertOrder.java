@@ -0,0 +1,10 @@
+/**
+ * Σειρά επανεισαγωγής στο forced reinsert του R*-tree. Αφαιρούνται πάντα τα p entries
+ * που απέχουν περισσότερο από το κέντρο του κόμβου· αλλάζει μόνο η σειρά εισαγωγής τους.
+ *   CLOSE – πρώτα το πιο κοντινό στο κέντρο (close reinsert, το καλύτερο κατά το άρθρο).
+ *   FAR   – πρώτα το πιο απομακρυσμένο (far reinsert).
+ */
+public enum ReinsertOrder {
+    CLOSE,
+    FAR
+}
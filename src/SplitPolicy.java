@@ -0,0 +1,10 @@
+/**
+ * Αλγόριθμος split κόμβου που υπερχειλίζει.
+ *   RSTAR     – R*-tree: άξονας με ελάχιστο άθροισμα περιμέτρων, κατανομή με ελάχιστη επικάλυψη.
+ *   QUADRATIC – Guttman quadratic split: δύο «σπόροι» που θα σπαταλούσαν το μεγαλύτερο εμβαδόν
+ *               και ανάθεση των υπολοίπων με βάση τη διαφορά διεύρυνσης.
+ */
+public enum SplitPolicy {
+    RSTAR,
+    QUADRATIC
+}
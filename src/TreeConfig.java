@@ -0,0 +1,173 @@
+/**
+ * Παράμετροι ενός R*-tree: μέγεθος σελίδας κόμβου, χωρητικότητα (M, m),
+ * ποσοστό forced reinsert και αλγόριθμος split.
+ * Η χωρητικότητα μπορεί να προκύψει από το μέγεθος σελίδας και τη διάσταση (maxFill), ώστε ο
+ * κόμβος (μαζί με το προσωρινό M+1 entry της υπερχείλισης) να χωράει ακριβώς στη σελίδα· οι
+ * προεπιλογές κρατούν M = IndexFile.DEFAULT_MAX_ENTRIES.
+ * Όλες οι τιμές αποθηκεύονται στο superblock του IndexFile.
+ */
+public final class TreeConfig {
+    public static final double DEFAULT_MAX_FILL = 1.0;          // όλα τα slots της σελίδας
+    public static final double DEFAULT_MIN_FILL = 0.4;          // m = 40% του M (R*-tree)
+    public static final double DEFAULT_REINSERT_FRACTION = 0.3; // p = 30% του M (R*-tree)
+
+    private final int dimension;
+    private final int pageSize;
+    private final int maxEntries;
+    private final int minEntries;
+    private final double reinsertFraction;
+    private final SplitPolicy splitPolicy;
+    private final ReinsertOrder reinsertOrder;
+    private final boolean aggregateCounts;
+
+    /**
+     * Προεπιλεγμένες παράμετροι για σελίδα pageSize bytes: M = IndexFile.DEFAULT_MAX_ENTRIES
+     * (ή όσο χωράει μια μικρότερη σελίδα), ανεξάρτητα από το πόσο μεγάλη είναι η σελίδα.
+     * Για M που γεμίζει τη σελίδα, maxFill = DEFAULT_MAX_FILL στον επόμενο κατασκευαστή.
+     */
+    public TreeConfig(int dimension, int pageSize) {
+        this(dimension, pageSize,
+                Math.min(IndexFile.DEFAULT_MAX_ENTRIES, IndexFile.pageCapacity(dimension, pageSize) - 1),
+                DEFAULT_MIN_FILL, DEFAULT_REINSERT_FRACTION, SplitPolicy.RSTAR);
+    }
+
+    /**
+     * @param dimension        Διάσταση των σημείων.
+     * @param pageSize         Bytes ανά σελίδα κόμβου (δύναμη του 2).
+     * @param maxFill          Ποσοστό των slots της σελίδας που χρησιμοποιούνται ως M, στο (0, 1].
+     * @param minFill          m ως ποσοστό του M, στο (0, 0.5].
+     * @param reinsertFraction Ποσοστό του M που επανεισάγεται σε overflow, στο [0, 0.5]· 0 = χωρίς reinsert.
+     * @param splitPolicy      Αλγόριθμος split.
+     */
+    public TreeConfig(int dimension, int pageSize, double maxFill, double minFill,
+                      double reinsertFraction, SplitPolicy splitPolicy) {
+        this(dimension, pageSize,
+                (int) Math.floor(checkFraction("maxFill", maxFill, 1.0)
+                        * (IndexFile.pageCapacity(dimension, pageSize) - 1)),
+                checkFraction("minFill", minFill, 0.5),
+                reinsertFraction, splitPolicy);
+    }
+
+    private TreeConfig(int dimension, int pageSize, int maxEntries, double minFill,
+                       double reinsertFraction, SplitPolicy splitPolicy) {
+        this(dimension, pageSize, maxEntries, Math.max(2, (int) Math.floor(minFill * maxEntries)),
+                reinsertFraction, splitPolicy);
+    }
+
+    TreeConfig(int dimension, int pageSize, int maxEntries, int minEntries,
+               double reinsertFraction, SplitPolicy splitPolicy) {
+        this(dimension, pageSize, maxEntries, minEntries, reinsertFraction, splitPolicy, ReinsertOrder.CLOSE);
+    }
+
+    TreeConfig(int dimension, int pageSize, int maxEntries, int minEntries,
+               double reinsertFraction, SplitPolicy splitPolicy, ReinsertOrder reinsertOrder) {
+        this(dimension, pageSize, maxEntries, minEntries, reinsertFraction, splitPolicy, reinsertOrder, false);
+    }
+
+    /** Ακριβείς τιμές (π.χ. όπως διαβάστηκαν από το superblock). */
+    TreeConfig(int dimension, int pageSize, int maxEntries, int minEntries, double reinsertFraction,
+               SplitPolicy splitPolicy, ReinsertOrder reinsertOrder, boolean aggregateCounts) {
+        if (maxEntries < 3 || maxEntries + 1 > IndexFile.pageCapacity(dimension, pageSize)) {
+            throw new IllegalArgumentException("TreeConfig: M = " + maxEntries
+                    + " δεν ταιριάζει σε σελίδα " + pageSize + " bytes (DIM=" + dimension + ")");
+        }
+        if (minEntries < 2 || 2 * minEntries > maxEntries + 1) {
+            throw new IllegalArgumentException("TreeConfig: m = " + minEntries
+                    + " πρέπει να είναι στο [2, (M+1)/2] για M = " + maxEntries);
+        }
+        checkFraction("reinsertFraction", reinsertFraction, 0.5);
+        if (splitPolicy == null || reinsertOrder == null) {
+            throw new IllegalArgumentException("TreeConfig: splitPolicy/reinsertOrder δεν μπορεί να είναι null");
+        }
+        this.dimension = dimension;
+        this.pageSize = pageSize;
+        this.maxEntries = maxEntries;
+        this.minEntries = minEntries;
+        this.reinsertFraction = reinsertFraction;
+        this.splitPolicy = splitPolicy;
+        this.reinsertOrder = reinsertOrder;
+        this.aggregateCounts = aggregateCounts;
+    }
+
+    /** @return Ίδιες παράμετροι με άλλη σειρά επανεισαγωγής. */
+    public TreeConfig withReinsertOrder(ReinsertOrder order) {
+        return new TreeConfig(dimension, pageSize, maxEntries, minEntries, reinsertFraction, splitPolicy,
+                order, aggregateCounts);
+    }
+
+    /**
+     * @return Ίδιες παράμετροι, με ή χωρίς aggregate R-tree: κάθε internal entry κρατάει
+     *         ενημερωμένο το πλήθος σημείων του υποδέντρου του (βλ. RStarTree.countInRange).
+     *         Κοστίζει μία εγγραφή ανά επίπεδο σε κάθε εισαγωγή/διαγραφή.
+     */
+    public TreeConfig withAggregateCounts(boolean enabled) {
+        return new TreeConfig(dimension, pageSize, maxEntries, minEntries, reinsertFraction, splitPolicy,
+                reinsertOrder, enabled);
+    }
+
+    /**
+     * Παράμετροι για συγκεκριμένο M: η σελίδα είναι η μικρότερη που το χωράει
+     * (βλ. IndexFile.pageSizeFor), με τις προεπιλογές για τα υπόλοιπα.
+     */
+    public static TreeConfig forCapacity(int dimension, int maxEntries) {
+        return forCapacity(dimension, maxEntries, DEFAULT_MIN_FILL, DEFAULT_REINSERT_FRACTION, SplitPolicy.RSTAR);
+    }
+
+    public static TreeConfig forCapacity(int dimension, int maxEntries, double minFill,
+                                         double reinsertFraction, SplitPolicy splitPolicy) {
+        return new TreeConfig(dimension, IndexFile.pageSizeFor(dimension, maxEntries), maxEntries,
+                checkFraction("minFill", minFill, 0.5), reinsertFraction, splitPolicy);
+    }
+
+    private static double checkFraction(String name, double value, double max) {
+        if (!(value >= 0.0 && value <= max)) {
+            throw new IllegalArgumentException("TreeConfig: " + name + " πρέπει να είναι στο [0, " + max
+                    + "], δόθηκε " + value);
+        }
+        return value;
+    }
+
+    public int getDimension() {
+        return dimension;
+    }
+
+    /** @return Bytes ανά σελίδα κόμβου. */
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /** @return Μέγιστος αριθμός entries ανά κόμβο (M). */
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /** @return Ελάχιστος αριθμός entries ανά κόμβο (m). */
+    public int getMinEntries() {
+        return minEntries;
+    }
+
+    /** @return Ποσοστό του M που επανεισάγεται στο πρώτο overflow ενός επιπέδου. */
+    public double getReinsertFraction() {
+        return reinsertFraction;
+    }
+
+    public SplitPolicy getSplitPolicy() {
+        return splitPolicy;
+    }
+
+    public ReinsertOrder getReinsertOrder() {
+        return reinsertOrder;
+    }
+
+    /** @return true αν τα internal entries κρατούν ενημερωμένο το πλήθος του υποδέντρου τους. */
+    public boolean hasAggregateCounts() {
+        return aggregateCounts;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("page=%d B, M=%d, m=%d, reinsert=%.2f %s, split=%s%s",
+                pageSize, maxEntries, minEntries, reinsertFraction, reinsertOrder, splitPolicy,
+                aggregateCounts ? ", counts" : "");
+    }
+}